@@ -0,0 +1,34 @@
+package com.ecommerce.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sizing and expiry of the named cache regions under {@code cache.regions}.
+ *
+ * A region is bounded either by entry count or, for caches that weigh their
+ * entries, by estimated bytes; Caffeine evicts within that bound by frequency
+ * and recency. Unset durations disable the corresponding policy.
+ */
+@Data
+@ConfigurationProperties(prefix = "cache")
+public class CacheRegionProperties {
+
+    private Map<String, Region> regions = new LinkedHashMap<>();
+
+    @Data
+    public static class Region {
+
+        private Long maximumSize;
+        private DataSize maximumWeight;
+        private Duration expireAfterWrite;
+        private Duration expireAfterAccess;
+        // Loading caches only: serve the old value while it is reloaded in the background
+        private Duration refreshAfterWrite;
+    }
+}
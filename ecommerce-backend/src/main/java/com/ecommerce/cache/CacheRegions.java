@@ -0,0 +1,194 @@
+package com.ecommerce.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Builds the application's Caffeine caches from the named regions in
+ * {@link CacheRegionProperties} and keeps track of them for reporting.
+ *
+ * Every region records Caffeine statistics and is bound to Micrometer as
+ * {@code cache.*} meters tagged with the region name. Caches that load on a
+ * miss themselves instead of through a {@link CacheLoader} report their load
+ * times with {@link #recordLoad}.
+ */
+@Component
+@EnableConfigurationProperties(CacheRegionProperties.class)
+@Slf4j
+public class CacheRegions {
+
+    private final CacheRegionProperties properties;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final ConcurrentHashMap<String, Registered> caches = new ConcurrentHashMap<>();
+
+    public CacheRegions(CacheRegionProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Cache bounded by entry count
+     */
+    public <K, V> Cache<K, V> cache(String name) {
+        return register(name, configure(name, false, false).build());
+    }
+
+    /**
+     * Cache bounded by the summed weight of its entries, usually estimated bytes
+     */
+    public <K, V> Cache<K, V> cache(String name, Weigher<K, V> weigher) {
+        Caffeine<K, V> builder = configure(name, true, false).weigher(weigher);
+        return register(name, builder.build());
+    }
+
+    /**
+     * Cache that loads misses, and refreshes entries if the region sets refresh-after-write
+     */
+    public <K, V> LoadingCache<K, V> loadingCache(String name, CacheLoader<K, V> loader) {
+        return register(name, configure(name, false, true).build(loader));
+    }
+
+    /**
+     * Count a load done outside Caffeine, e.g. a batch read that fills several entries
+     */
+    public void recordLoad(String name, long elapsedNanos) {
+        Registered registered = caches.get(name);
+        if (registered != null) {
+            registered.manualLoads.increment();
+            registered.manualLoadNanos.add(elapsedNanos);
+        }
+    }
+
+    public Map<String, RegionStats> getStats() {
+        Map<String, RegionStats> stats = new LinkedHashMap<>();
+        caches.keySet().stream().sorted().forEach(name -> stats.put(name, getStats(name)));
+        return stats;
+    }
+
+    /**
+     * Statistics of one region, or null if no cache was built for it
+     */
+    public RegionStats getStats(String name) {
+        Registered registered = caches.get(name);
+        return registered != null ? registered.snapshot() : null;
+    }
+
+    /**
+     * Counters since startup. Loads include both Caffeine loads and ones
+     * reported through {@link #recordLoad}; weighted size is null for regions
+     * bounded by entry count.
+     */
+    public record RegionStats(String policy, long entries, Long weightedSize, long hits, long misses,
+                              double hitRate, long evictions, long loads, long loadFailures,
+                              double avgLoadMillis) {
+    }
+
+    private Caffeine<Object, Object> configure(String name, boolean weighted, boolean loading) {
+        CacheRegionProperties.Region region = properties.getRegions().get(name);
+        if (region == null) {
+            throw new IllegalStateException("No cache region configured under cache.regions." + name);
+        }
+        if (caches.containsKey(name)) {
+            throw new IllegalStateException("Cache region " + name + " is already in use");
+        }
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+        if (region.getMaximumWeight() != null) {
+            if (!weighted) {
+                throw new IllegalStateException("Cache region " + name + " sets maximum-weight but its entries are not weighed");
+            }
+            builder.maximumWeight(region.getMaximumWeight().toBytes());
+        } else if (region.getMaximumSize() != null) {
+            if (weighted) {
+                throw new IllegalStateException("Cache region " + name + " weighs its entries and needs maximum-weight");
+            }
+            builder.maximumSize(region.getMaximumSize());
+        }
+        if (region.getExpireAfterWrite() != null) {
+            builder.expireAfterWrite(region.getExpireAfterWrite());
+        }
+        if (region.getExpireAfterAccess() != null) {
+            builder.expireAfterAccess(region.getExpireAfterAccess());
+        }
+        if (region.getRefreshAfterWrite() != null) {
+            if (!loading) {
+                throw new IllegalStateException("Cache region " + name + " sets refresh-after-write but has no loader");
+            }
+            builder.refreshAfterWrite(region.getRefreshAfterWrite());
+        }
+        return builder;
+    }
+
+    private <K, V, C extends Cache<K, V>> C register(String name, C cache) {
+        caches.put(name, new Registered(describe(properties.getRegions().get(name)), cache));
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, name);
+        }
+        log.debug("Cache region {} built: {}", name, caches.get(name).policy);
+        return cache;
+    }
+
+    private static String describe(CacheRegionProperties.Region region) {
+        List<String> parts = new ArrayList<>();
+        if (region.getMaximumWeight() != null) {
+            parts.add("maximumWeight=" + region.getMaximumWeight());
+        } else if (region.getMaximumSize() != null) {
+            parts.add("maximumSize=" + region.getMaximumSize());
+        } else {
+            parts.add("unbounded");
+        }
+        if (region.getExpireAfterWrite() != null) {
+            parts.add("expireAfterWrite=" + region.getExpireAfterWrite());
+        }
+        if (region.getExpireAfterAccess() != null) {
+            parts.add("expireAfterAccess=" + region.getExpireAfterAccess());
+        }
+        if (region.getRefreshAfterWrite() != null) {
+            parts.add("refreshAfterWrite=" + region.getRefreshAfterWrite());
+        }
+        return String.join(",", parts);
+    }
+
+    private static final class Registered {
+
+        final String policy;
+        final Cache<?, ?> cache;
+        final LongAdder manualLoads = new LongAdder();
+        final LongAdder manualLoadNanos = new LongAdder();
+
+        Registered(String policy, Cache<?, ?> cache) {
+            this.policy = policy;
+            this.cache = cache;
+        }
+
+        RegionStats snapshot() {
+            CacheStats stats = cache.stats();
+            Long weightedSize = cache.policy().eviction()
+                    .filter(eviction -> eviction.isWeighted())
+                    .map(eviction -> eviction.weightedSize().orElse(0L))
+                    .orElse(null);
+            long loads = stats.loadCount() + manualLoads.sum();
+            long loadNanos = stats.totalLoadTime() + manualLoadNanos.sum();
+            return new RegionStats(policy, cache.estimatedSize(), weightedSize, stats.hitCount(),
+                    stats.missCount(), stats.hitRate(), stats.evictionCount(), loads,
+                    stats.loadFailureCount(), loads == 0 ? 0.0 : loadNanos / 1e6 / loads);
+        }
+    }
+}
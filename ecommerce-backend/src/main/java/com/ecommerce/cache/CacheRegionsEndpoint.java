@@ -0,0 +1,32 @@
+package com.ecommerce.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code /actuator/cacheregions}: per-region hit, miss, eviction and load
+ * statistics. The built-in {@code caches} endpoint only covers Spring's
+ * CacheManager, which these caches do not go through.
+ */
+@Component
+@Endpoint(id = "cacheregions")
+@RequiredArgsConstructor
+public class CacheRegionsEndpoint {
+
+    private final CacheRegions cacheRegions;
+
+    @ReadOperation
+    public Map<String, CacheRegions.RegionStats> regions() {
+        return cacheRegions.getStats();
+    }
+
+    @ReadOperation
+    public CacheRegions.RegionStats region(@Selector String name) {
+        return cacheRegions.getStats(name);
+    }
+}
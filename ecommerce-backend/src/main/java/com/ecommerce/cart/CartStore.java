@@ -0,0 +1,605 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.util.SnowflakeIdGenerator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * In-memory shopping carts keyed by user id, persisted write-behind.
+ *
+ * Carts live in lock-striped shards; every operation on a user's cart runs
+ * under its shard's lock, appends the change to the {@link CartWal} and then
+ * applies it in memory, so cart requests never wait on the database once the
+ * cart is loaded. Item ids come from the Snowflake generator so they are known
+ * before the row is written.
+ *
+ * A periodic flush writes every cart changed since the last flush to
+ * shopping_carts and cart_items in one transaction and then drops the log
+ * segments it covered. If that transaction fails, each cart is written in a
+ * transaction of its own; carts that still fail stay dirty and keep their
+ * segments, and a cart that fails {@code max-failed-flushes} times while other
+ * carts are written is quarantined: logged with its lines and dropped from
+ * memory. On startup the remaining segments are replayed over the carts in the
+ * database and flushed. Carts that are persisted and idle for
+ * {@code idle-ttl} are dropped from memory and reloaded on the next request.
+ *
+ * The store assumes one backend instance serves a given user's cart requests;
+ * with several instances, route cart traffic by user id.
+ */
+@Component
+@Slf4j
+public class CartStore {
+
+    private static final String SELECT_CART_SQL =
+            "SELECT u.id, c.id, i.id, i.product_id, i.quantity FROM users u " +
+            "LEFT JOIN shopping_carts c ON c.user_id = u.id LEFT JOIN cart_items i ON i.cart_id = c.id " +
+            "WHERE u.id = ? ORDER BY i.id";
+    private static final String INSERT_CART_SQL =
+            "INSERT INTO shopping_carts (id, user_id, created_at, updated_at) VALUES (?, ?, ?, ?)";
+    private static final String TOUCH_CART_SQL = "UPDATE shopping_carts SET updated_at = ? WHERE id = ?";
+    private static final String DELETE_ITEMS_SQL = "DELETE FROM cart_items WHERE cart_id = ?";
+    private static final String INSERT_ITEM_SQL =
+            "INSERT INTO cart_items (id, cart_id, product_id, quantity) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SnowflakeIdGenerator idGenerator;
+    private final CartWal wal;
+    private final Shard[] shards;
+    private final int mask;
+    private final long idleTtlMillis;
+    private final int maxFailedFlushes;
+
+    private final LongAdder mutations = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedCarts = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder quarantined = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private List<Long> recoveredUsers = List.of();
+
+    public CartStore(JdbcTemplate jdbcTemplate,
+                     TransactionTemplate transactionTemplate,
+                     SnowflakeIdGenerator idGenerator,
+                     @Value("${cart.store.shards:64}") int shardCount,
+                     @Value("${cart.store.idle-ttl:30m}") Duration idleTtl,
+                     @Value("${cart.store.max-failed-flushes:3}") int maxFailedFlushes,
+                     @Value("${cart.wal.dir:data/cart-wal}") String walDir,
+                     @Value("${cart.wal.sync-every-append:false}") boolean syncEveryAppend) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.idGenerator = idGenerator;
+        this.wal = new CartWal(Paths.get(walDir), syncEveryAppend);
+        int size = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+        this.mask = size - 1;
+        this.idleTtlMillis = idleTtl.toMillis();
+        this.maxFailedFlushes = maxFailedFlushes;
+    }
+
+    /**
+     * Replay log segments left by the previous run and write the result to the database
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        Map<Long, Cart> recovered = new HashMap<>();
+        Set<Long> unknownUsers = new HashSet<>();
+        long records = wal.replay(entry -> {
+            if (unknownUsers.contains(entry.userId())) return;
+            Cart cart = recovered.get(entry.userId());
+            if (cart == null) {
+                cart = load(entry.userId());
+                if (cart == null) {
+                    unknownUsers.add(entry.userId());
+                    return;
+                }
+                recovered.put(entry.userId(), cart);
+            }
+            cart.apply(entry);
+        });
+        if (records == 0) {
+            return;
+        }
+        recovered.forEach((userId, cart) -> {
+            Shard shard = shardOf(userId);
+            cart.version = cart.persistedVersion + 1;
+            // Any remaining segment may hold its records
+            cart.walSegment = 1;
+            shard.carts.put(userId, cart);
+            shard.dirty.add(userId);
+        });
+        recoveredUsers = List.copyOf(recovered.keySet());
+        log.info("Recovered {} carts from {} cart log records ({} for unknown users skipped)",
+                recovered.size(), records, unknownUsers.size());
+        flush();
+    }
+
+    /**
+     * Users whose carts {@link #recover} replayed from the log, returned once
+     * so the caller can restore what the previous run held for them
+     */
+    public synchronized List<Long> takeRecoveredUsers() {
+        List<Long> users = recoveredUsers;
+        recoveredUsers = List.of();
+        return users;
+    }
+
+    /**
+     * Current contents of a user's cart; throws if the user does not exist
+     */
+    public Contents get(long userId) {
+        return withCart(userId, Cart::contents);
+    }
+
+    /**
+     * A line of the user's cart; throws if there is no such line
+     */
+    public Line line(long userId, long itemId) {
+        return withCart(userId, cart -> cart.line(itemId));
+    }
+
+    /**
+     * Add to the line of a product, creating the line (and the cart) if needed
+     */
+    public Line add(long userId, long productId, int quantity) {
+        return withCart(userId, cart -> {
+            Line line = cart.lines.get(productId);
+            Line updated = line != null
+                    ? new Line(line.itemId(), productId, line.quantity() + quantity)
+                    : new Line(idGenerator.nextId(), productId, quantity);
+            write(userId, cart, updated);
+            return updated;
+        });
+    }
+
+    /**
+     * Set the quantity of a line; returns the line as it was before
+     */
+    public Line setQuantity(long userId, long itemId, int quantity) {
+        return withCart(userId, cart -> {
+            Line line = cart.line(itemId);
+            write(userId, cart, new Line(itemId, line.productId(), quantity));
+            return line;
+        });
+    }
+
+    /**
+     * Remove a line; returns the removed line
+     */
+    public Line remove(long userId, long itemId) {
+        return withCart(userId, cart -> {
+            Line line = cart.line(itemId);
+            write(userId, cart, new Line(itemId, line.productId(), 0));
+            return line;
+        });
+    }
+
+    /**
+     * Empty a cart; returns the removed lines
+     */
+    public List<Line> clear(long userId) {
+        return withCart(userId, cart -> {
+            List<Line> removed = List.copyOf(cart.lines.values());
+            if (!removed.isEmpty()) {
+                long segment = wal.append(CartWal.CLEAR, userId, cart.cartId, 0L, 0L, 0);
+                cart.clear();
+                changed(userId, cart, segment);
+            }
+            return removed;
+        });
+    }
+
+    /**
+     * Take ordered quantities out of a cart after checkout. Lines added or
+     * raised while the order was placed keep the difference.
+     *
+     * @param quantities product id -> quantity ordered
+     */
+    public void consume(long userId, Map<Long, Integer> quantities) {
+        withCart(userId, cart -> {
+            quantities.forEach((productId, quantity) -> {
+                Line line = cart.lines.get(productId);
+                if (line != null) {
+                    write(userId, cart, new Line(line.itemId(), productId, Math.max(0, line.quantity() - quantity)));
+                }
+            });
+            return null;
+        });
+    }
+
+    /**
+     * Write carts changed since the last flush to the database, then delete
+     * the log segments no unwritten cart was recorded in
+     */
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval-ms:1000}")
+    public synchronized void flush() throws IOException {
+        long sealed = wal.rotate();
+        List<Snapshot> batch = drainDirty();
+        if (batch.isEmpty()) {
+            wal.deleteThrough(sealed);
+            return;
+        }
+        long start = System.nanoTime();
+        Set<Long> failedUsers = writeBatch(batch);
+        // A failure only counts against a cart when other carts could be written
+        boolean isolated = failedUsers.size() < batch.size();
+        long keepFrom = sealed + 1;
+        for (Snapshot snapshot : batch) {
+            if (!failedUsers.contains(snapshot.userId())) {
+                markPersisted(snapshot, sealed);
+            } else if (requeueOrQuarantine(snapshot, isolated)) {
+                keepFrom = Math.min(keepFrom, snapshot.walSegment());
+            }
+        }
+        // Replaying a segment rewinds carts to what it recorded, so segments
+        // are only dropped oldest first, up to the first one a pending cart needs
+        wal.deleteThrough(keepFrom - 1);
+        if (!failedUsers.isEmpty()) {
+            failedFlushes.increment();
+        }
+        if (isolated) {
+            flushes.increment();
+            flushedCarts.add(batch.size() - failedUsers.size());
+            flushNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.wal.sync-interval-ms:100}")
+    public void sync() throws IOException {
+        wal.sync();
+    }
+
+    /**
+     * Drop persisted carts that have not been used for {@code idle-ttl}
+     */
+    @Scheduled(fixedDelayString = "${cart.store.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTtlMillis;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                Iterator<Cart> it = shard.carts.values().iterator();
+                while (it.hasNext()) {
+                    Cart cart = it.next();
+                    if (cart.version == cart.persistedVersion && cart.lastAccess < cutoff) {
+                        it.remove();
+                        evictions.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        wal.close();
+    }
+
+    public Stats getStats() {
+        long carts = 0, dirty = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                carts += shard.carts.size();
+                dirty += shard.dirty.size();
+            }
+        }
+        int segments;
+        try {
+            segments = wal.segmentCount();
+        } catch (IOException e) {
+            segments = -1;
+        }
+        long n = flushes.sum();
+        return new Stats(carts, dirty, segments, mutations.sum(), loads.sum(), n, flushedCarts.sum(),
+                n == 0 ? 0.0 : flushNanos.sum() / 1e6 / n, failedFlushes.sum(), quarantined.sum(),
+                evictions.sum());
+    }
+
+    /**
+     * A cart line; item ids stay the same for the life of the line
+     */
+    public record Line(long itemId, long productId, int quantity) {
+    }
+
+    /**
+     * Cart id (0 while the user has never had a cart) and lines in the order they were added
+     */
+    public record Contents(long cartId, List<Line> lines) {
+    }
+
+    /**
+     * Store size and counters; dirty carts have changes not yet flushed, log
+     * segments are the ones not yet deleted (including the active one), failed
+     * flushes are those that could not write every cart
+     */
+    public record Stats(long carts, long dirtyCarts, int logSegments, long mutations, long loads,
+                        long flushes, long flushedCarts, double avgFlushMillis, long failedFlushes,
+                        long quarantinedCarts, long evictions) {
+    }
+
+    /**
+     * Run an operation under the user's shard lock, loading the cart outside
+     * the lock if it is not in memory
+     */
+    private <R> R withCart(long userId, Function<Cart, R> operation) {
+        Shard shard = shardOf(userId);
+        Cart loaded = null;
+        while (true) {
+            synchronized (shard) {
+                Cart cart = shard.carts.get(userId);
+                if (cart == null && loaded != null) {
+                    cart = loaded;
+                    shard.carts.put(userId, cart);
+                }
+                if (cart != null) {
+                    cart.lastAccess = System.currentTimeMillis();
+                    return operation.apply(cart);
+                }
+            }
+            loaded = load(userId);
+            if (loaded == null) {
+                throw new RuntimeException("User not found");
+            }
+        }
+    }
+
+    /**
+     * Log and apply a line's new state; quantity 0 removes the line
+     */
+    private void write(long userId, Cart cart, Line line) {
+        if (cart.cartId == 0) {
+            cart.cartId = idGenerator.nextId();
+        }
+        long segment = wal.append(CartWal.LINE, userId, cart.cartId, line.itemId(), line.productId(), line.quantity());
+        cart.set(line);
+        changed(userId, cart, segment);
+    }
+
+    private void changed(long userId, Cart cart, long segment) {
+        if (cart.walSegment == 0) {
+            cart.walSegment = segment;
+        }
+        cart.version++;
+        shardOf(userId).dirty.add(userId);
+        mutations.increment();
+    }
+
+    /**
+     * The user's cart as stored, or null if the user does not exist
+     */
+    private Cart load(long userId) {
+        loads.increment();
+        List<Object[]> rows = jdbcTemplate.query(SELECT_CART_SQL, (rs, rowNum) -> new Object[]{
+                rs.getLong(2), rs.getObject(3) != null ? rs.getLong(3) : null, rs.getLong(4), rs.getInt(5)
+        }, userId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        long cartId = (Long) rows.get(0)[0];
+        Cart cart = new Cart(cartId, cartId != 0);
+        for (Object[] row : rows) {
+            if (row[1] != null) {
+                cart.set(new Line((Long) row[1], (Long) row[2], (Integer) row[3]));
+            }
+        }
+        return cart;
+    }
+
+    private List<Snapshot> drainDirty() {
+        List<Snapshot> batch = new ArrayList<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Long userId : shard.dirty) {
+                    Cart cart = shard.carts.get(userId);
+                    if (cart != null) {
+                        batch.add(new Snapshot(userId, cart.cartId, cart.persistedCart, cart.version,
+                                cart.walSegment, List.copyOf(cart.lines.values())));
+                    }
+                }
+                shard.dirty.clear();
+            }
+        }
+        // Cart id order keeps row locks consistent between flushes
+        batch.sort(Comparator.comparingLong(Snapshot::cartId));
+        return batch;
+    }
+
+    private void writeAll(List<Snapshot> batch) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> newCarts = new ArrayList<>();
+        List<Object[]> touched = new ArrayList<>();
+        List<Object[]> cleared = new ArrayList<>();
+        List<Object[]> items = new ArrayList<>();
+        for (Snapshot snapshot : batch) {
+            if (snapshot.persistedCart()) {
+                touched.add(new Object[]{now, snapshot.cartId()});
+                cleared.add(new Object[]{snapshot.cartId()});
+            } else {
+                newCarts.add(new Object[]{snapshot.cartId(), snapshot.userId(), now, now});
+            }
+            for (Line line : snapshot.lines()) {
+                items.add(new Object[]{line.itemId(), snapshot.cartId(), line.productId(), line.quantity()});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_CART_SQL, newCarts);
+        jdbcTemplate.batchUpdate(TOUCH_CART_SQL, touched);
+        jdbcTemplate.batchUpdate(DELETE_ITEMS_SQL, cleared);
+        jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, items);
+    }
+
+    /**
+     * Write the batch in one transaction, or cart by cart if that fails so one
+     * cart the database rejects cannot hold back the rest. Returns the users
+     * whose carts could not be written.
+     */
+    private Set<Long> writeBatch(List<Snapshot> batch) {
+        if (batch.size() > 1) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> writeAll(batch));
+                return Set.of();
+            } catch (RuntimeException e) {
+                log.warn("Failed to flush {} carts together, writing them one by one: {}",
+                        batch.size(), e.getMessage());
+            }
+        }
+        Set<Long> failedUsers = new HashSet<>();
+        for (Snapshot snapshot : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> writeAll(List.of(snapshot)));
+            } catch (RuntimeException e) {
+                failedUsers.add(snapshot.userId());
+                log.warn("Failed to flush cart {} of user {}: {}", snapshot.cartId(), snapshot.userId(), e.getMessage());
+            }
+        }
+        return failedUsers;
+    }
+
+    /**
+     * @param sealed highest segment sealed before the snapshot was taken; later
+     *               changes to the cart are all in newer segments
+     */
+    private void markPersisted(Snapshot snapshot, long sealed) {
+        Shard shard = shardOf(snapshot.userId());
+        synchronized (shard) {
+            Cart cart = shard.carts.get(snapshot.userId());
+            if (cart != null) {
+                cart.persistedVersion = Math.max(cart.persistedVersion, snapshot.version());
+                cart.persistedCart = true;
+                cart.failedFlushes = 0;
+                cart.walSegment = cart.version == cart.persistedVersion ? 0 : sealed + 1;
+            }
+        }
+    }
+
+    /**
+     * Keep a cart that failed to flush dirty for the next flush, or quarantine
+     * it once it has failed too often with nothing newer to try. Returns
+     * whether the cart is still pending.
+     */
+    private boolean requeueOrQuarantine(Snapshot snapshot, boolean isolated) {
+        Shard shard = shardOf(snapshot.userId());
+        synchronized (shard) {
+            Cart cart = shard.carts.get(snapshot.userId());
+            if (cart == null) {
+                return false;
+            }
+            if (isolated) {
+                cart.failedFlushes++;
+            }
+            if (cart.failedFlushes >= maxFailedFlushes && cart.version == snapshot.version()) {
+                shard.carts.remove(snapshot.userId());
+                shard.dirty.remove(snapshot.userId());
+                quarantined.increment();
+                log.error("Quarantined cart {} of user {} after {} failed flushes; unsaved lines: {}",
+                        snapshot.cartId(), snapshot.userId(), cart.failedFlushes, snapshot.lines());
+                return false;
+            }
+            shard.dirty.add(snapshot.userId());
+            return true;
+        }
+    }
+
+    private Shard shardOf(long userId) {
+        long h = userId * 0x9E3779B97F4A7C15L;
+        return shards[(int) (h ^ (h >>> 32)) & mask];
+    }
+
+    private record Snapshot(long userId, long cartId, boolean persistedCart, long version, long walSegment,
+                            List<Line> lines) {
+    }
+
+    private static final class Shard {
+
+        final Map<Long, Cart> carts = new HashMap<>();
+        final Set<Long> dirty = new HashSet<>();
+    }
+
+    private static final class Cart {
+
+        long cartId;
+        boolean persistedCart;
+        long version;
+        long persistedVersion;
+        // Oldest log segment with changes not yet in the database; 0 if none
+        long walSegment;
+        int failedFlushes;
+        long lastAccess = System.currentTimeMillis();
+        // Lines by product id, in the order they were added
+        final Map<Long, Line> lines = new LinkedHashMap<>();
+        final Map<Long, Long> productByItem = new HashMap<>();
+
+        Cart(long cartId, boolean persistedCart) {
+            this.cartId = cartId;
+            this.persistedCart = persistedCart;
+        }
+
+        Line line(long itemId) {
+            Long productId = productByItem.get(itemId);
+            if (productId == null) {
+                throw new RuntimeException("Cart item not found");
+            }
+            return lines.get(productId);
+        }
+
+        void set(Line line) {
+            if (line.quantity() > 0) {
+                Line previous = lines.put(line.productId(), line);
+                if (previous != null && previous.itemId() != line.itemId()) {
+                    productByItem.remove(previous.itemId());
+                }
+                productByItem.put(line.itemId(), line.productId());
+            } else {
+                lines.remove(line.productId());
+                productByItem.remove(line.itemId());
+            }
+        }
+
+        void clear() {
+            lines.clear();
+            productByItem.clear();
+        }
+
+        void apply(CartWal.Entry entry) {
+            if (cartId == 0) {
+                cartId = entry.cartId();
+            }
+            if (entry.type() == CartWal.CLEAR) {
+                clear();
+            } else {
+                set(new Line(entry.itemId(), entry.productId(), entry.quantity()));
+            }
+        }
+
+        Contents contents() {
+            return new Contents(cartId, List.copyOf(lines.values()));
+        }
+    }
+}
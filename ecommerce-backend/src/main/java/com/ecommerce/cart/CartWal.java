@@ -0,0 +1,230 @@
+package com.ecommerce.cart;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of cart mutations, split into numbered segment files.
+ *
+ * Records are fixed-size and carry absolute state (a line's new quantity, or
+ * "cart cleared"), so replaying a segment over a database that already holds
+ * some of its effects still ends in the right state. Each record is written to
+ * the file channel before the mutation is applied in memory, so it survives a
+ * process crash; {@link #sync} forces it to disk, bounding what an OS crash
+ * can lose.
+ *
+ * A flush seals the active segment with {@link #rotate} and deletes sealed
+ * segments once their carts are in the database.
+ *
+ * Segment layout: magic, version, then records of type, user id, cart id,
+ * item id, product id, quantity and a CRC32 of the preceding bytes. A torn or
+ * corrupt record ends the replay of its segment.
+ */
+@Slf4j
+final class CartWal implements AutoCloseable {
+
+    static final byte LINE = 1;
+    static final byte CLEAR = 2;
+
+    private static final int MAGIC = 0x43574C47; // "CWLG"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = 1 + 8 + 8 + 8 + 8 + 4 + 4;
+    private static final String PREFIX = "cart-";
+    private static final String SUFFIX = ".wal";
+
+    private final Path dir;
+    private final boolean syncEveryAppend;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private long segment;
+    private long records;
+    private boolean unsynced;
+
+    CartWal(Path dir, boolean syncEveryAppend) throws IOException {
+        this.dir = dir;
+        this.syncEveryAppend = syncEveryAppend;
+        Files.createDirectories(dir);
+        List<Long> existing = segments();
+        segment = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        channel = open(segment);
+    }
+
+    /**
+     * One logged mutation; quantity 0 on a line record means the line was removed
+     */
+    record Entry(byte type, long userId, long cartId, long itemId, long productId, int quantity) {
+    }
+
+    /**
+     * Append a record to the active segment; returns that segment's number
+     */
+    synchronized long append(byte type, long userId, long cartId, long itemId, long productId, int quantity) {
+        record.clear();
+        record.put(type).putLong(userId).putLong(cartId).putLong(itemId).putLong(productId).putInt(quantity);
+        crc.reset();
+        crc.update(record.array(), 0, RECORD_BYTES - 4);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            if (syncEveryAppend) {
+                channel.force(false);
+            } else {
+                unsynced = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to cart log segment " + segment, e);
+        }
+        records++;
+        return segment;
+    }
+
+    /**
+     * Force appended records to disk
+     */
+    synchronized void sync() throws IOException {
+        if (unsynced) {
+            channel.force(false);
+            unsynced = false;
+        }
+    }
+
+    /**
+     * Seal the active segment and start a new one. Returns the highest sealed
+     * segment number; the active segment is kept when nothing was appended to it.
+     */
+    synchronized long rotate() throws IOException {
+        if (records == 0) {
+            return segment - 1;
+        }
+        channel.force(false);
+        channel.close();
+        long sealed = segment;
+        segment++;
+        channel = open(segment);
+        records = 0;
+        unsynced = false;
+        return sealed;
+    }
+
+    /**
+     * Delete sealed segments up to and including {@code sealed}
+     */
+    void deleteThrough(long sealed) throws IOException {
+        for (long number : segments()) {
+            if (number <= sealed) {
+                Files.deleteIfExists(path(number));
+            }
+        }
+    }
+
+    /**
+     * Feed every record of the sealed segments to {@code consumer}, oldest first.
+     * Returns the number of records read.
+     */
+    long replay(Consumer<Entry> consumer) throws IOException {
+        long replayed = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES);
+        CRC32 check = new CRC32();
+        for (long number : segments()) {
+            if (number >= segment) {
+                break;
+            }
+            try (FileChannel in = FileChannel.open(path(number), StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                if (!readFully(in, header) || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    log.warn("Skipping cart log segment {} with a missing or unknown header", number);
+                    continue;
+                }
+                while (true) {
+                    buffer.clear();
+                    if (!readFully(in, buffer)) {
+                        break;
+                    }
+                    check.reset();
+                    check.update(buffer.array(), 0, RECORD_BYTES - 4);
+                    Entry entry = new Entry(buffer.get(), buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                            buffer.getLong(), buffer.getInt());
+                    if (buffer.getInt() != (int) check.getValue()) {
+                        log.warn("Corrupt record in cart log segment {} after {} records; ignoring the rest",
+                                number, replayed);
+                        break;
+                    }
+                    consumer.accept(entry);
+                    replayed++;
+                }
+            }
+        }
+        return replayed;
+    }
+
+    int segmentCount() throws IOException {
+        return segments().size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private FileChannel open(long number) throws IOException {
+        FileChannel opened = FileChannel.open(path(number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            opened.write(header);
+        }
+        return opened;
+    }
+
+    /**
+     * Fill the buffer, or return false at end of file (including a torn tail)
+     */
+    private static boolean readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unexpected file in cart log directory: {}", file);
+                }
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    private Path path(long number) {
+        return dir.resolve(String.format("%s%012d%s", PREFIX, number, SUFFIX));
+    }
+}
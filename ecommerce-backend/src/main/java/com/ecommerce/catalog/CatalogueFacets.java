@@ -0,0 +1,250 @@
+package com.ecommerce.catalog;
+
+import com.ecommerce.repository.InventoryTransactionRepository;
+import com.ecommerce.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory faceted filtering of the active catalogue by category (including
+ * subcategories), price bucket, discount and stock.
+ *
+ * Built from the database on first use and rebuilt on a schedule, which also
+ * picks up category moves. Product writes are applied by the product service
+ * after commit, and stock is refreshed for products with new inventory
+ * transactions. Queries share a read lock; changes take the write lock briefly
+ * and are replayed onto an index that is being rebuilt.
+ */
+@Component
+@Slf4j
+public class CatalogueFacets {
+
+    private static final int LOAD_BATCH_SIZE = 50_000;
+
+    private final ProductRepository productRepository;
+    private final CategoryTreeCache categoryTree;
+    private final InventoryTransactionRepository transactionRepository;
+    private final BigDecimal[] priceBounds;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object();
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder queryNanos = new LongAdder();
+
+    // Both guarded by lock; replay is non-null while a rebuild is reading the tables
+    private FacetIndex index;
+    private List<Consumer<FacetIndex>> replay;
+
+    private volatile long transactionWatermark = -1;
+
+    public CatalogueFacets(ProductRepository productRepository,
+                           CategoryTreeCache categoryTree,
+                           InventoryTransactionRepository transactionRepository,
+                           @Value("${catalog.facets.price-bounds:25,50,100,250,500}") BigDecimal[] priceBounds) {
+        this.productRepository = productRepository;
+        this.categoryTree = categoryTree;
+        this.transactionRepository = transactionRepository;
+        this.priceBounds = priceBounds;
+    }
+
+    /**
+     * Products matching every selected facet value; values selected within one
+     * facet are alternatives
+     *
+     * @param categoryIds categories to match, each including its subcategories; empty for any
+     * @param buckets     price bucket numbers to match; empty for any
+     */
+    public Result query(Set<Long> categoryIds, Set<Integer> buckets, boolean discountedOnly,
+                        boolean inStockOnly, int offset, int limit) {
+        ensureBuilt();
+        long start = System.nanoTime();
+        FacetIndex.Result result;
+        lock.readLock().lock();
+        try {
+            result = index.query(categoryIds, buckets, discountedOnly, inStockOnly, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+            queries.increment();
+            queryNanos.add(System.nanoTime() - start);
+        }
+        List<PriceBucket> priceBuckets = new ArrayList<>(result.priceBucketCounts().length);
+        for (int b = 0; b < result.priceBucketCounts().length; b++) {
+            priceBuckets.add(new PriceBucket(b,
+                    b == 0 ? BigDecimal.ZERO : priceBounds[b - 1],
+                    b < priceBounds.length ? priceBounds[b] : null,
+                    result.priceBucketCounts()[b]));
+        }
+        return new Result(result.total(), result.productIds(), result.categoryCounts(), priceBuckets,
+                result.discountedCount(), result.inStockCount());
+    }
+
+    /**
+     * Matching product ids for one page, plus counts per facet value
+     */
+    public record Result(int total, long[] productIds, Map<Long, Integer> categoryCounts,
+                         List<PriceBucket> priceBuckets, int discountedCount, int inStockCount) {
+    }
+
+    /**
+     * Products priced from {@code min} (inclusive) to {@code max} (exclusive, null when open-ended)
+     */
+    public record PriceBucket(int bucket, BigDecimal min, BigDecimal max, int count) {
+    }
+
+    /**
+     * Add or replace an active product
+     */
+    public void put(long productId, Long categoryId, BigDecimal price, BigDecimal discountPrice, int stock) {
+        long[] lineage = lineageOf(categoryTree.current(), categoryId);
+        apply(index -> index.put(productId, lineage, price, discountPrice, stock));
+    }
+
+    public void remove(long productId) {
+        apply(index -> index.remove(productId));
+    }
+
+    public void updateStock(long productId, int stock) {
+        apply(index -> index.updateStock(productId, stock));
+    }
+
+    /**
+     * Refresh the in-stock bitmap for products with inventory transactions since the last pass
+     */
+    @Scheduled(fixedDelayString = "${catalog.facets.stock-sync-interval-ms:10000}")
+    public void syncStock() {
+        if (!isBuilt()) return;
+        long upToId = transactionRepository.findMaxId();
+        long afterId = transactionWatermark;
+        if (afterId >= 0 && upToId > afterId) {
+            List<Long> changed = transactionRepository.findProductIdsChangedBetween(afterId, upToId);
+            if (!changed.isEmpty()) {
+                List<Object[]> rows = productRepository.findStockRowsByIdIn(changed);
+                apply(index -> {
+                    for (Object[] row : rows) {
+                        index.updateStock((Long) row[0], row[1] != null ? (Integer) row[1] : 0);
+                    }
+                });
+            }
+        }
+        transactionWatermark = upToId;
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.facets.rebuild-interval-ms:3600000}",
+               initialDelayString = "${catalog.facets.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            withWriteLock(() -> replay = new ArrayList<>());
+            FacetIndex rebuilt;
+            long watermark;
+            try {
+                watermark = transactionRepository.findMaxId();
+                rebuilt = load();
+            } catch (RuntimeException e) {
+                withWriteLock(() -> replay = null);
+                throw e;
+            }
+            withWriteLock(() -> {
+                replay.forEach(update -> update.accept(rebuilt));
+                replay = null;
+                index = rebuilt;
+            });
+            // The next sync re-reads stock changed after the rebuild started
+            if (transactionWatermark < 0 || transactionWatermark > watermark) {
+                transactionWatermark = watermark;
+            }
+            FacetIndex.Stats stats = rebuilt.stats();
+            log.info("Catalogue facets built: {} products, {} categories, {} KB of bitmaps in {} ms",
+                    stats.products(), stats.categories(), stats.bitmapBytes() / 1024,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    public Stats getStats() {
+        FacetIndex.Stats stats;
+        lock.readLock().lock();
+        try {
+            stats = index != null ? index.stats() : new FacetIndex.Stats(0, 0, 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+        long n = queries.sum();
+        return new Stats(stats.products(), stats.categories(), stats.bitmapBytes(),
+                n, n == 0 ? 0.0 : queryNanos.sum() / 1e3 / n);
+    }
+
+    public record Stats(int products, int categories, long bitmapBytes, long queries, double avgQueryMicros) {
+    }
+
+    private boolean isBuilt() {
+        lock.readLock().lock();
+        try {
+            return index != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureBuilt() {
+        if (isBuilt()) return;
+        synchronized (rebuildLock) {
+            if (!isBuilt()) {
+                rebuild();
+            }
+        }
+    }
+
+    private void apply(Consumer<FacetIndex> update) {
+        withWriteLock(() -> {
+            if (index != null) {
+                update.accept(index);
+            }
+            if (replay != null) {
+                replay.add(update);
+            }
+        });
+    }
+
+    private void withWriteLock(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private FacetIndex load() {
+        // One tree snapshot for the whole load, so every product is filed under the same version
+        CategoryTree tree = categoryTree.current();
+        FacetIndex loaded = new FacetIndex(priceBounds);
+        long afterId = 0L;
+        List<Object[]> rows;
+        do {
+            rows = productRepository.findFacetRowsAfter(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                loaded.put(afterId, lineageOf(tree, (Long) row[1]), (BigDecimal) row[2], (BigDecimal) row[3],
+                        row[4] != null ? (Integer) row[4] : 0);
+            }
+        } while (rows.size() == LOAD_BATCH_SIZE);
+        return loaded;
+    }
+
+    private static long[] lineageOf(CategoryTree tree, Long categoryId) {
+        return categoryId != null ? tree.lineage(categoryId) : null;
+    }
+}
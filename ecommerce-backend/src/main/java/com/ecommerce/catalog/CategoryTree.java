@@ -0,0 +1,224 @@
+package com.ecommerce.catalog;
+
+import com.ecommerce.model.CategoryNode;
+import com.ecommerce.model.CategorySummary;
+import com.ecommerce.util.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the category hierarchy.
+ *
+ * Categories are stored in depth-first preorder, so the descendants of a
+ * category are the contiguous range up to {@code subtreeEnd} and a subtree is a
+ * single array slice. Each category also keeps its lineage (itself, then its
+ * ancestors up to the root). Categories whose parent is missing or that sit on
+ * a parent cycle are treated as top-level.
+ */
+public final class CategoryTree {
+
+    private final long version;
+    private final long[] ids;
+    private final int[] subtreeEnd;
+    private final long[][] lineage;
+    private final CategorySummary[] summaries;
+    private final CategoryNode[] nodes;
+    private final List<CategoryNode> roots;
+    private final LongIntHashMap positions;
+
+    private CategoryTree(long version, long[] ids, int[] subtreeEnd, long[][] lineage,
+                         CategorySummary[] summaries, CategoryNode[] nodes, List<CategoryNode> roots,
+                         LongIntHashMap positions) {
+        this.version = version;
+        this.ids = ids;
+        this.subtreeEnd = subtreeEnd;
+        this.lineage = lineage;
+        this.summaries = summaries;
+        this.nodes = nodes;
+        this.roots = roots;
+        this.positions = positions;
+    }
+
+    /**
+     * @param rows (id, name, description, imageUrl, parentId) of every category
+     */
+    static CategoryTree build(long version, List<Object[]> rows) {
+        Map<Long, Object[]> byId = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            byId.put((Long) row[0], row);
+        }
+        Map<Long, List<Object[]>> children = new HashMap<>();
+        List<Object[]> topLevel = new ArrayList<>();
+        for (Object[] row : rows) {
+            Long parentId = (Long) row[4];
+            if (parentId == null || !byId.containsKey(parentId)) {
+                topLevel.add(row);
+            } else {
+                children.computeIfAbsent(parentId, id -> new ArrayList<>()).add(row);
+            }
+        }
+        Comparator<Object[]> byName = Comparator.comparing((Object[] row) -> (String) row[1],
+                Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(row -> (Long) row[0]);
+        topLevel.sort(byName);
+        children.values().forEach(list -> list.sort(byName));
+
+        int n = rows.size();
+        Builder builder = new Builder(n, children);
+        for (Object[] row : topLevel) {
+            builder.visit(row, null);
+        }
+        // Whatever is left sits on a cycle; break it at the lowest id
+        rows.stream()
+                .filter(row -> builder.positions.get((Long) row[0]) == LongIntHashMap.NO_VALUE)
+                .sorted(Comparator.comparing(row -> (Long) row[0]))
+                .forEach(row -> {
+                    if (builder.positions.get((Long) row[0]) == LongIntHashMap.NO_VALUE) {
+                        builder.visit(row, null);
+                    }
+                });
+
+        List<CategoryNode> roots = new ArrayList<>();
+        for (int i = 0; i < n; i = builder.subtreeEnd[i]) {
+            roots.add(builder.nodes[i]);
+        }
+        return new CategoryTree(version, builder.ids, builder.subtreeEnd, builder.lineage, builder.summaries,
+                builder.nodes, List.copyOf(roots), builder.positions);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public boolean contains(long categoryId) {
+        return positions.get(categoryId) != LongIntHashMap.NO_VALUE;
+    }
+
+    /**
+     * Ids of the category and all of its descendants; empty if it is unknown
+     */
+    public long[] subtreeIds(long categoryId) {
+        int position = positions.get(categoryId);
+        if (position == LongIntHashMap.NO_VALUE) {
+            return new long[0];
+        }
+        return Arrays.copyOfRange(ids, position, subtreeEnd[position]);
+    }
+
+    /**
+     * The category followed by its ancestors up to the root, or just the id if
+     * the category is unknown. The returned array is shared and must not be modified.
+     */
+    public long[] lineage(long categoryId) {
+        int position = positions.get(categoryId);
+        return position != LongIntHashMap.NO_VALUE ? lineage[position] : new long[]{categoryId};
+    }
+
+    public CategorySummary summary(long categoryId) {
+        int position = positions.get(categoryId);
+        return position != LongIntHashMap.NO_VALUE ? summaries[position] : null;
+    }
+
+    public CategoryNode node(long categoryId) {
+        int position = positions.get(categoryId);
+        return position != LongIntHashMap.NO_VALUE ? nodes[position] : null;
+    }
+
+    /**
+     * All categories in preorder: each parent comes before its subcategories
+     */
+    public List<CategorySummary> summaries() {
+        return Arrays.asList(summaries.clone());
+    }
+
+    public List<CategoryNode> roots() {
+        return roots;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    private static final class Builder {
+
+        final Map<Long, List<Object[]>> children;
+        final long[] ids;
+        final int[] subtreeEnd;
+        final long[][] lineage;
+        final CategorySummary[] summaries;
+        final CategoryNode[] nodes;
+        final LongIntHashMap positions;
+        int next;
+
+        Builder(int size, Map<Long, List<Object[]>> children) {
+            this.children = children;
+            this.ids = new long[size];
+            this.subtreeEnd = new int[size];
+            this.lineage = new long[size][];
+            this.summaries = new CategorySummary[size];
+            this.nodes = new CategoryNode[size];
+            this.positions = new LongIntHashMap(size);
+        }
+
+        /**
+         * Depth-first preorder walk; explicit stack so deep trees cannot overflow
+         */
+        void visit(Object[] root, long[] parentLineage) {
+            List<Frame> stack = new ArrayList<>();
+            stack.add(new Frame(root, parentLineage));
+            while (!stack.isEmpty()) {
+                Frame frame = stack.get(stack.size() - 1);
+                if (frame.position < 0) {
+                    long id = (Long) frame.row[0];
+                    frame.position = next++;
+                    ids[frame.position] = id;
+                    positions.put(id, frame.position);
+                    long[] ancestors = frame.parentLineage != null ? frame.parentLineage : new long[0];
+                    long[] own = new long[ancestors.length + 1];
+                    own[0] = id;
+                    System.arraycopy(ancestors, 0, own, 1, ancestors.length);
+                    lineage[frame.position] = own;
+                    frame.children = children.getOrDefault(id, List.of());
+                }
+                if (frame.childIndex < frame.children.size()) {
+                    Object[] child = frame.children.get(frame.childIndex++);
+                    if (positions.get((Long) child[0]) == LongIntHashMap.NO_VALUE) {
+                        stack.add(new Frame(child, lineage[frame.position]));
+                    }
+                    continue;
+                }
+                stack.remove(stack.size() - 1);
+                int position = frame.position;
+                subtreeEnd[position] = next;
+                long[] own = lineage[position];
+                Object[] row = frame.row;
+                summaries[position] = new CategorySummary(ids[position], (String) row[1], (String) row[2],
+                        (String) row[3], own.length > 1 ? own[1] : null, own.length - 1, next - position);
+                List<CategoryNode> subCategories = new ArrayList<>();
+                for (int child = position + 1; child < next; child = subtreeEnd[child]) {
+                    subCategories.add(nodes[child]);
+                }
+                nodes[position] = new CategoryNode(ids[position], (String) row[1], (String) row[2],
+                        (String) row[3], List.copyOf(subCategories));
+            }
+        }
+    }
+
+    private static final class Frame {
+
+        final Object[] row;
+        final long[] parentLineage;
+        int position = -1;
+        List<Object[]> children;
+        int childIndex;
+
+        Frame(Object[] row, long[] parentLineage) {
+            this.row = row;
+            this.parentLineage = parentLineage;
+        }
+    }
+}
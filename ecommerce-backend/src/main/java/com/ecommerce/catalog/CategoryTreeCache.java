@@ -0,0 +1,54 @@
+package com.ecommerce.catalog;
+
+import com.ecommerce.cache.CacheRegions;
+import com.ecommerce.repository.CategoryRepository;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the current {@link CategoryTree} snapshot as the single entry of the
+ * {@code categories} cache region.
+ *
+ * Readers get the whole snapshot and never see a half-built tree; concurrent
+ * first reads share one build. Category writes invalidate the entry after
+ * commit so the next reader builds a tree with a higher version. The region's
+ * refresh-after-write rebuilds in the background while the old tree keeps being
+ * served, which picks up changes made by other nodes.
+ */
+@Component
+@Slf4j
+public class CategoryTreeCache {
+
+    private static final String KEY = "tree";
+
+    private final CategoryRepository categoryRepository;
+    private final LoadingCache<String, CategoryTree> trees;
+    private final AtomicLong version = new AtomicLong();
+
+    public CategoryTreeCache(CategoryRepository categoryRepository, CacheRegions cacheRegions) {
+        this.categoryRepository = categoryRepository;
+        this.trees = cacheRegions.loadingCache("categories", key -> build());
+    }
+
+    public CategoryTree current() {
+        return trees.get(KEY);
+    }
+
+    /**
+     * Rebuild on the next read; a tree being built concurrently is not kept
+     */
+    public void invalidate() {
+        trees.invalidate(KEY);
+    }
+
+    private CategoryTree build() {
+        long start = System.currentTimeMillis();
+        CategoryTree rebuilt = CategoryTree.build(version.incrementAndGet(), categoryRepository.findTreeRows());
+        log.debug("Category tree v{} built: {} categories in {} ms",
+                rebuilt.version(), rebuilt.size(), System.currentTimeMillis() - start);
+        return rebuilt;
+    }
+}
@@ -0,0 +1,217 @@
+package com.ecommerce.catalog;
+
+import com.ecommerce.util.IntBitmap;
+import com.ecommerce.util.LongIntHashMap;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bitmap indexes over the active catalogue, one bitmap per facet value.
+ *
+ * Products get dense ordinals that are kept for the life of the index. A
+ * product is set in the bitmap of its category and of every ancestor category,
+ * so a category filter covers its subtree. The lineage a product was filed
+ * under is kept, so it is removed from the same bitmaps even if the category
+ * tree changed since. The price bucket follows the price a
+ * customer pays, i.e. the discount price when there is one. Not thread-safe.
+ */
+class FacetIndex {
+
+    private static final long[] NO_LINEAGE = {0L};
+
+    private final BigDecimal[] priceBounds;
+
+    private final LongIntHashMap ordinals = new LongIntHashMap();
+    private long[] productIds = new long[1 << 10];
+    private long[][] lineageOf = new long[productIds.length][];
+    private int[] bucketOf = new int[productIds.length];
+    private int ordinalCount;
+
+    private final IntBitmap active = new IntBitmap();
+    private final Map<Long, IntBitmap> categories = new HashMap<>();
+    private final IntBitmap[] priceBuckets;
+    private final IntBitmap discounted = new IntBitmap();
+    private final IntBitmap inStock = new IntBitmap();
+
+    /**
+     * @param priceBounds ascending upper bounds of every price bucket but the last
+     */
+    FacetIndex(BigDecimal[] priceBounds) {
+        this.priceBounds = priceBounds;
+        this.priceBuckets = new IntBitmap[priceBounds.length + 1];
+        for (int i = 0; i < priceBuckets.length; i++) {
+            priceBuckets[i] = new IntBitmap();
+        }
+    }
+
+    /**
+     * Add or replace an active product
+     *
+     * @param lineage the product's category and its ancestors, for subtree
+     *                rollup; null for a product without a category
+     */
+    void put(long productId, long[] lineage, BigDecimal price, BigDecimal discountPrice, int stock) {
+        remove(productId);
+        int ordinal = ordinals.get(productId);
+        if (ordinal == LongIntHashMap.NO_VALUE) {
+            ordinal = ordinalCount++;
+            if (ordinal == productIds.length) {
+                productIds = Arrays.copyOf(productIds, ordinal * 2);
+                lineageOf = Arrays.copyOf(lineageOf, ordinal * 2);
+                bucketOf = Arrays.copyOf(bucketOf, ordinal * 2);
+            }
+            productIds[ordinal] = productId;
+            ordinals.put(productId, ordinal);
+        }
+        // Products without a category are filed under 0
+        if (lineage == null) {
+            lineage = NO_LINEAGE;
+        }
+        int bucket = bucketOf(discountPrice != null ? discountPrice : price);
+        lineageOf[ordinal] = lineage;
+        bucketOf[ordinal] = bucket;
+
+        active.add(ordinal);
+        for (long id : lineage) {
+            categories.computeIfAbsent(id, c -> new IntBitmap()).add(ordinal);
+        }
+        priceBuckets[bucket].add(ordinal);
+        if (discountPrice != null) {
+            discounted.add(ordinal);
+        }
+        if (stock > 0) {
+            inStock.add(ordinal);
+        }
+    }
+
+    void remove(long productId) {
+        int ordinal = ordinals.get(productId);
+        if (ordinal == LongIntHashMap.NO_VALUE || !active.remove(ordinal)) {
+            return;
+        }
+        for (long id : lineageOf[ordinal]) {
+            IntBitmap bitmap = categories.get(id);
+            if (bitmap != null && bitmap.remove(ordinal) && bitmap.isEmpty()) {
+                categories.remove(id);
+            }
+        }
+        priceBuckets[bucketOf[ordinal]].remove(ordinal);
+        discounted.remove(ordinal);
+        inStock.remove(ordinal);
+    }
+
+    void updateStock(long productId, int stock) {
+        int ordinal = ordinals.get(productId);
+        if (ordinal == LongIntHashMap.NO_VALUE || !active.contains(ordinal)) {
+            return;
+        }
+        if (stock > 0) {
+            inStock.add(ordinal);
+        } else {
+            inStock.remove(ordinal);
+        }
+    }
+
+    /**
+     * Products matching every selected facet, with counts per facet value. Each
+     * facet's counts apply the other facets' filters but not its own, so they
+     * tell how many results selecting that value as well would give.
+     */
+    Result query(Set<Long> categoryIds, Set<Integer> buckets, boolean discountedOnly, boolean inStockOnly,
+                 int offset, int limit) {
+        IntBitmap categoryFilter = union(categoryIds.stream().map(categories::get).toList());
+        IntBitmap priceFilter = union(buckets.stream()
+                .filter(b -> b >= 0 && b < priceBuckets.length)
+                .map(b -> priceBuckets[b])
+                .toList());
+        IntBitmap discountFilter = discountedOnly ? discounted : null;
+        IntBitmap stockFilter = inStockOnly ? inStock : null;
+
+        IntBitmap matches = intersect(categoryFilter, priceFilter, discountFilter, stockFilter);
+        int[] page = matches.slice(offset, limit);
+        long[] ids = new long[page.length];
+        for (int i = 0; i < page.length; i++) {
+            ids[i] = productIds[page[i]];
+        }
+
+        IntBitmap withoutCategory = intersect(null, priceFilter, discountFilter, stockFilter);
+        Map<Long, Integer> categoryCounts = new LinkedHashMap<>();
+        categories.forEach((id, bitmap) -> {
+            if (id == 0L) return;
+            int count = IntBitmap.andCardinality(withoutCategory, bitmap);
+            if (count > 0) categoryCounts.put(id, count);
+        });
+
+        IntBitmap withoutPrice = intersect(categoryFilter, null, discountFilter, stockFilter);
+        int[] bucketCounts = new int[priceBuckets.length];
+        for (int b = 0; b < priceBuckets.length; b++) {
+            bucketCounts[b] = IntBitmap.andCardinality(withoutPrice, priceBuckets[b]);
+        }
+
+        int discountedCount = IntBitmap.andCardinality(
+                intersect(categoryFilter, priceFilter, null, stockFilter), discounted);
+        int inStockCount = IntBitmap.andCardinality(
+                intersect(categoryFilter, priceFilter, discountFilter, null), inStock);
+
+        return new Result(matches.cardinality(), ids, categoryCounts, bucketCounts, discountedCount, inStockCount);
+    }
+
+    record Result(int total, long[] productIds, Map<Long, Integer> categoryCounts, int[] priceBucketCounts,
+                  int discountedCount, int inStockCount) {
+    }
+
+    Stats stats() {
+        long bytes = active.sizeInBytes() + discounted.sizeInBytes() + inStock.sizeInBytes();
+        for (IntBitmap bitmap : categories.values()) {
+            bytes += bitmap.sizeInBytes();
+        }
+        for (IntBitmap bitmap : priceBuckets) {
+            bytes += bitmap.sizeInBytes();
+        }
+        return new Stats(active.cardinality(), categories.size(), bytes);
+    }
+
+    record Stats(int products, int categories, long bitmapBytes) {
+    }
+
+    private int bucketOf(BigDecimal price) {
+        if (price == null) return 0;
+        int bucket = 0;
+        while (bucket < priceBounds.length && price.compareTo(priceBounds[bucket]) >= 0) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * OR of the given bitmaps, or null (no filter) when none was selected
+     */
+    private static IntBitmap union(List<IntBitmap> bitmaps) {
+        if (bitmaps.isEmpty()) {
+            return null;
+        }
+        IntBitmap union = new IntBitmap();
+        for (IntBitmap bitmap : bitmaps) {
+            if (bitmap != null) {
+                union = IntBitmap.or(union, bitmap);
+            }
+        }
+        return union;
+    }
+
+    private IntBitmap intersect(IntBitmap... filters) {
+        IntBitmap result = active;
+        for (IntBitmap filter : filters) {
+            if (filter != null) {
+                result = IntBitmap.and(result, filter);
+            }
+        }
+        return result;
+    }
+}
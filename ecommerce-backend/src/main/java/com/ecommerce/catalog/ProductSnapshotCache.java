@@ -0,0 +1,162 @@
+package com.ecommerce.catalog;
+
+import com.ecommerce.cache.CacheRegions;
+import com.ecommerce.model.ProductSnapshot;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.util.Transactions;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of {@link ProductSnapshot}s in the {@code products}
+ * region, bounded by estimated bytes.
+ *
+ * Writes invalidate by version: each invalidation stamps the product's slot
+ * with a new value of a global clock, and a load only populates the cache if
+ * no invalidation of its slot happened since the load started. A load that
+ * raced a write therefore never re-caches the old row. Slots are a fixed
+ * striped array, so an unrelated product sharing a slot at worst skips one
+ * cache fill.
+ */
+@Component
+public class ProductSnapshotCache {
+
+    private static final String REGION = "products";
+    private static final int VERSION_SLOTS = 1 << 12;
+
+    private final ProductRepository productRepository;
+    private final CacheRegions cacheRegions;
+    private final Cache<Long, ProductSnapshot> snapshots;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLongArray invalidatedAt = new AtomicLongArray(VERSION_SLOTS);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder discardedLoads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ProductSnapshotCache(ProductRepository productRepository, CacheRegions cacheRegions) {
+        this.productRepository = productRepository;
+        this.cacheRegions = cacheRegions;
+        this.snapshots = cacheRegions.cache(REGION, (Long id, ProductSnapshot snapshot) -> snapshot.estimatedBytes());
+    }
+
+    public Optional<ProductSnapshot> get(long productId) {
+        ProductSnapshot cached = snapshots.getIfPresent(productId);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+        List<ProductSnapshot> loaded = load(List.of(productId));
+        return loaded.isEmpty() ? Optional.empty() : Optional.of(loaded.get(0));
+    }
+
+    /**
+     * Snapshots of the given products that exist; misses are loaded with one query
+     */
+    public Map<Long, ProductSnapshot> getAll(Collection<Long> productIds) {
+        Map<Long, ProductSnapshot> result = new HashMap<>(snapshots.getAllPresent(productIds));
+        hits.add(result.size());
+        if (result.size() < productIds.size()) {
+            List<Long> missing = new ArrayList<>(productIds.size() - result.size());
+            for (Long productId : productIds) {
+                if (!result.containsKey(productId)) {
+                    missing.add(productId);
+                }
+            }
+            misses.add(missing.size());
+            for (ProductSnapshot snapshot : load(missing)) {
+                result.put(snapshot.id(), snapshot);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drop a product now and again once the current transaction ends, so a
+     * concurrent reader cannot re-cache the row as it was before the write
+     */
+    public void invalidate(long productId) {
+        invalidateNow(productId);
+        Transactions.afterCompletion(() -> invalidateNow(productId));
+    }
+
+    public void invalidateAll(Collection<Long> productIds) {
+        productIds.forEach(this::invalidateNow);
+        Transactions.afterCompletion(() -> productIds.forEach(this::invalidateNow));
+    }
+
+    public Stats getStats() {
+        long n = loads.sum();
+        return new Stats(snapshots.estimatedSize(), weightedBytes(), hits.sum(), misses.sum(), n,
+                n == 0 ? 0.0 : loadNanos.sum() / 1e3 / n, discardedLoads.sum(), invalidations.sum());
+    }
+
+    /**
+     * Cache size and counters; discarded loads raced a write and were returned but not cached
+     */
+    public record Stats(long entries, long weightedBytes, long hits, long misses, long loads,
+                        double avgLoadMicros, long discardedLoads, long invalidations) {
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+    }
+
+    private List<ProductSnapshot> load(List<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        long version = clock.get();
+        long start = System.nanoTime();
+        List<ProductSnapshot> loaded = productRepository.findSnapshotsByIdIn(productIds);
+        long elapsed = System.nanoTime() - start;
+        loadNanos.add(elapsed);
+        loads.increment();
+        cacheRegions.recordLoad(REGION, elapsed);
+        for (ProductSnapshot snapshot : loaded) {
+            if (invalidatedAt.get(slotOf(snapshot.id())) > version) {
+                discardedLoads.increment();
+                continue;
+            }
+            snapshots.asMap().putIfAbsent(snapshot.id(), snapshot);
+            // An invalidation between the check and the put must still win
+            if (invalidatedAt.get(slotOf(snapshot.id())) > version) {
+                snapshots.asMap().remove(snapshot.id(), snapshot);
+            }
+        }
+        return loaded;
+    }
+
+    private void invalidateNow(long productId) {
+        invalidatedAt.set(slotOf(productId), clock.incrementAndGet());
+        snapshots.invalidate(productId);
+        invalidations.increment();
+    }
+
+    private long weightedBytes() {
+        return snapshots.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+    private static int slotOf(long productId) {
+        long h = productId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (VERSION_SLOTS - 1);
+    }
+}
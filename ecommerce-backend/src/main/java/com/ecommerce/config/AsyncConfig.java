@@ -0,0 +1,42 @@
+package com.ecommerce.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors for {@code @Async} work and background recommendation refreshes.
+ *
+ * Declaring any executor bean turns off Spring Boot's default one, so the general
+ * {@code taskExecutor} used by {@code @Async} is declared here as well.
+ */
+@Configuration
+public class AsyncConfig {
+
+    @Bean(name = "taskExecutor")
+    public ThreadPoolTaskExecutor taskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setThreadNamePrefix("task-");
+        return executor;
+    }
+
+    /**
+     * Bounded pool for stale-while-revalidate refreshes; when the queue is full
+     * the refresh is rejected and the stale list keeps being served
+     */
+    @Bean(name = "recommendationRefreshExecutor")
+    public ThreadPoolTaskExecutor recommendationRefreshExecutor(
+            @Value("${ml.recommendation.cache.refresh.core-pool-size:2}") int corePoolSize,
+            @Value("${ml.recommendation.cache.refresh.max-pool-size:4}") int maxPoolSize,
+            @Value("${ml.recommendation.cache.refresh.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("recommendation-refresh-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
@@ -0,0 +1,31 @@
+package com.ecommerce.config;
+
+import com.ecommerce.service.OrderNumberGenerator;
+import com.ecommerce.util.SnowflakeIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+
+@Configuration
+public class IdGeneratorConfig {
+    
+    /**
+     * Node id must differ between backend instances running side by side (0-1023)
+     */
+    @Bean
+    public SnowflakeIdGenerator snowflakeIdGenerator(@Value("${ids.node-id:0}") long nodeId) {
+        return new SnowflakeIdGenerator(nodeId);
+    }
+    
+    /**
+     * Order numbers are "ORD-" followed by the Snowflake id in base 36
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public OrderNumberGenerator orderNumberGenerator(SnowflakeIdGenerator idGenerator) {
+        return () -> "ORD-" + Long.toString(idGenerator.nextId(), 36).toUpperCase(Locale.ROOT);
+    }
+}
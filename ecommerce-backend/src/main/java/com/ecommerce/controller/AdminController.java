@@ -0,0 +1,46 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.cart.CartStore;
+import com.ecommerce.catalog.CatalogueFacets;
+import com.ecommerce.catalog.ProductSnapshotCache;
+import com.ecommerce.search.ProductSearchIndex;
+import com.ecommerce.service.CartService;
+import com.ecommerce.service.ProductService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Operational statistics for the public catalogue and cart APIs. Kept out of
+ * /products and /cart, which are open to anonymous users, so these need an
+ * authenticated caller.
+ */
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class AdminController {
+    
+    private final ProductService productService;
+    private final CartService cartService;
+    
+    @GetMapping("/products/cache/stats")
+    public ResponseEntity<ProductSnapshotCache.Stats> getProductCacheStats() {
+        return ResponseEntity.ok(productService.getProductCacheStats());
+    }
+    
+    @GetMapping("/products/search/stats")
+    public ResponseEntity<ProductSearchIndex.Stats> getSearchStats() {
+        return ResponseEntity.ok(productService.getSearchStats());
+    }
+    
+    @GetMapping("/products/facets/stats")
+    public ResponseEntity<CatalogueFacets.Stats> getFacetStats() {
+        return ResponseEntity.ok(productService.getFacetStats());
+    }
+    
+    @GetMapping("/cart/store/stats")
+    public ResponseEntity<CartStore.Stats> getCartStoreStats() {
+        return ResponseEntity.ok(cartService.getStoreStats());
+    }
+}
@@ -1,7 +1,6 @@
 package com.ecommerce.controller;
 
-import com.ecommerce.model.CartItem;
-import com.ecommerce.model.ShoppingCart;
+import com.ecommerce.model.CartView;
 import com.ecommerce.service.CartService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -16,12 +15,12 @@ public class CartController {
     private final CartService cartService;
     
     @GetMapping("/{userId}")
-    public ResponseEntity<ShoppingCart> getCart(@PathVariable Long userId) {
+    public ResponseEntity<CartView> getCart(@PathVariable Long userId) {
         return ResponseEntity.ok(cartService.getCart(userId));
     }
     
     @PostMapping("/{userId}/add")
-    public ResponseEntity<CartItem> addToCart(
+    public ResponseEntity<CartView.Item> addToCart(
             @PathVariable Long userId,
             @RequestParam Long productId,
             @RequestParam(defaultValue = "1") Integer quantity) {
@@ -1,7 +1,9 @@
 package com.ecommerce.controller;
 
 import com.ecommerce.model.Category;
-import com.ecommerce.repository.CategoryRepository;
+import com.ecommerce.model.CategoryNode;
+import com.ecommerce.model.CategorySummary;
+import com.ecommerce.service.CategoryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -14,44 +16,39 @@ import java.util.List;
 @CrossOrigin(origins = "*")
 public class CategoryController {
     
-    private final CategoryRepository categoryRepository;
+    private final CategoryService categoryService;
     
     @GetMapping
-    public ResponseEntity<List<Category>> getAllCategories() {
-        return ResponseEntity.ok(categoryRepository.findAll());
+    public ResponseEntity<List<CategorySummary>> getAllCategories() {
+        return ResponseEntity.ok(categoryService.getAllCategories());
     }
     
     @GetMapping("/top-level")
-    public ResponseEntity<List<Category>> getTopLevelCategories() {
-        return ResponseEntity.ok(categoryRepository.findByParentCategoryIsNull());
+    public ResponseEntity<List<CategoryNode>> getTopLevelCategories() {
+        return ResponseEntity.ok(categoryService.getTopLevelCategories());
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<Category> getCategory(@PathVariable Long id) {
-        return categoryRepository.findById(id)
+    public ResponseEntity<CategoryNode> getCategory(@PathVariable Long id) {
+        return categoryService.getCategory(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
     
     @PostMapping
     public ResponseEntity<Category> createCategory(@RequestBody Category category) {
-        return ResponseEntity.ok(categoryRepository.save(category));
+        return ResponseEntity.ok(categoryService.createCategory(category));
     }
     
     @PutMapping("/{id}")
     public ResponseEntity<Category> updateCategory(@PathVariable Long id, 
                                                    @RequestBody Category category) {
-        Category existing = categoryRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Category not found"));
-        existing.setName(category.getName());
-        existing.setDescription(category.getDescription());
-        existing.setImageUrl(category.getImageUrl());
-        return ResponseEntity.ok(categoryRepository.save(existing));
+        return ResponseEntity.ok(categoryService.updateCategory(id, category));
     }
     
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteCategory(@PathVariable Long id) {
-        categoryRepository.deleteById(id);
+        categoryService.deleteCategory(id);
         return ResponseEntity.noContent().build();
     }
 }
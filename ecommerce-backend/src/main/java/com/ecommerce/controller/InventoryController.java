@@ -1,5 +1,7 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.inventory.StockContentionTracker;
+import com.ecommerce.inventory.StockReservationLedger;
 import com.ecommerce.model.InventoryTransaction;
 import com.ecommerce.model.Product;
 import com.ecommerce.service.InventoryService;
@@ -31,6 +33,17 @@ public class InventoryController {
         return ResponseEntity.ok(inventoryService.getLowStockProducts(threshold));
     }
     
+    @GetMapping("/contention")
+    public ResponseEntity<List<StockContentionTracker.SkuStats>> getStockContention(
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(inventoryService.getStockContention(limit));
+    }
+    
+    @GetMapping("/reservations/stats")
+    public ResponseEntity<StockReservationLedger.Stats> getReservationStats() {
+        return ResponseEntity.ok(inventoryService.getReservationStats());
+    }
+    
     @PostMapping("/update")
     public ResponseEntity<Void> updateInventory(@RequestBody Map<String, Object> request) {
         Long productId = Long.parseLong(request.get("productId").toString());
@@ -1,6 +1,9 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.model.CursorPage;
+import com.ecommerce.model.FacetedProducts;
 import com.ecommerce.model.Product;
+import com.ecommerce.model.ProductSummary;
 import com.ecommerce.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -10,6 +13,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/products")
@@ -20,28 +24,81 @@ public class ProductController {
     private final ProductService productService;
     
     @GetMapping
-    public ResponseEntity<Page<Product>> getAllProducts(
+    public ResponseEntity<Page<ProductSummary>> getAllProducts(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
         Pageable pageable = PageRequest.of(page, size);
         return ResponseEntity.ok(productService.getAllProducts(pageable));
     }
     
+    /**
+     * Cursor-paged listing for deep browsing: pass the returned nextCursor back
+     * to get the following slice
+     */
+    @GetMapping("/browse")
+    public ResponseEntity<CursorPage<ProductSummary>> browseProducts(
+            @RequestParam(defaultValue = "newest") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            ProductService.ListingOrder order = ProductService.ListingOrder.valueOf(sort.toUpperCase());
+            return ResponseEntity.ok(productService.getProductsAfter(order, cursor, Math.min(Math.max(size, 1), 100)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Filter by categories (with their subcategories), price buckets, discount and
+     * stock; returns counts per facet value alongside the page
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<FacetedProducts> getFacetedProducts(
+            @RequestParam(name = "category", required = false) Set<Long> categoryIds,
+            @RequestParam(name = "price", required = false) Set<Integer> priceBuckets,
+            @RequestParam(defaultValue = "false") boolean discounted,
+            @RequestParam(defaultValue = "false") boolean inStock,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(productService.getFacetedProducts(
+                categoryIds != null ? categoryIds : Set.of(), priceBuckets != null ? priceBuckets : Set.of(),
+                discounted, inStock,
+                Math.max(page, 0), Math.min(Math.max(size, 1), 100)));
+    }
+    
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProduct(@PathVariable Long id) {
-        return productService.getProductById(id)
+    public ResponseEntity<Product> getProduct(@PathVariable Long id,
+                                              @RequestParam(required = false) Long userId) {
+        return productService.getProductById(id, userId)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
     
     @GetMapping("/category/{categoryId}")
-    public ResponseEntity<List<Product>> getProductsByCategory(@PathVariable Long categoryId) {
+    public ResponseEntity<List<ProductSummary>> getProductsByCategory(@PathVariable Long categoryId) {
         return ResponseEntity.ok(productService.getProductsByCategory(categoryId));
     }
     
+    /**
+     * Products of a category including all of its subcategories
+     */
+    @GetMapping("/category/{categoryId}/subtree")
+    public ResponseEntity<Page<ProductSummary>> getProductsInCategoryTree(
+            @PathVariable Long categoryId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(productService.getProductsInCategoryTree(categoryId, PageRequest.of(page, size)));
+    }
+    
+    /**
+     * Full-text product search; prefix=true matches the last word as a prefix for type-ahead
+     */
     @GetMapping("/search")
-    public ResponseEntity<List<Product>> searchProducts(@RequestParam String q) {
-        return ResponseEntity.ok(productService.searchProducts(q));
+    public ResponseEntity<List<ProductSummary>> searchProducts(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "false") boolean prefix) {
+        return ResponseEntity.ok(productService.searchProducts(q, Math.min(Math.max(limit, 1), 200), prefix));
     }
     
     @PostMapping
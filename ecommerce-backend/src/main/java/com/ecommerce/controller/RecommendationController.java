@@ -1,6 +1,8 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.interaction.InteractionIngestor;
 import com.ecommerce.model.ProductRecommendation;
+import com.ecommerce.recommendation.RecommendationCache;
 import com.ecommerce.service.RecommendationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -20,13 +22,30 @@ public class RecommendationController {
     public ResponseEntity<List<ProductRecommendation>> getUserRecommendations(
             @PathVariable Long userId,
             @RequestParam(defaultValue = "10") int count) {
-        return ResponseEntity.ok(recommendationService.getRecommendations(userId, count));
+        return ResponseEntity.ok(recommendationService.getRecommendations(userId, Math.min(Math.max(count, 1), 100)));
     }
     
     @GetMapping("/guest")
     public ResponseEntity<List<ProductRecommendation>> getGuestRecommendations(
             @RequestParam(defaultValue = "10") int count) {
-        return ResponseEntity.ok(recommendationService.getGuestRecommendations(count));
+        return ResponseEntity.ok(recommendationService.getGuestRecommendations(Math.min(Math.max(count, 1), 100)));
+    }
+    
+    @GetMapping("/popular")
+    public ResponseEntity<List<ProductRecommendation>> getPopularProducts(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(defaultValue = "10") int count) {
+        return ResponseEntity.ok(recommendationService.getPopularProducts(categoryId, Math.min(Math.max(count, 1), 100)));
+    }
+    
+    @GetMapping("/cache/stats")
+    public ResponseEntity<RecommendationCache.Stats> getCacheStats() {
+        return ResponseEntity.ok(recommendationService.getCacheStats());
+    }
+    
+    @GetMapping("/interactions/stats")
+    public ResponseEntity<InteractionIngestor.Stats> getInteractionStats() {
+        return ResponseEntity.ok(recommendationService.getInteractionStats());
     }
 }
 
@@ -0,0 +1,212 @@
+package com.ecommerce.interaction;
+
+import com.ecommerce.model.UserInteraction;
+import com.ecommerce.util.Transactions;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous writer for user interactions.
+ *
+ * Request threads publish (user id, product id, type) into an
+ * {@link InteractionRingBuffer} without loading entities or touching the
+ * database. A single background thread drains the buffer and inserts rows with
+ * JDBC batching, which MySQL's rewriteBatchedStatements turns into multi-row
+ * inserts. Generated ids are never read back, so IDENTITY keys don't prevent
+ * batching here the way they do for Hibernate.
+ *
+ * When the buffer is full the producer wakes the writer and waits up to
+ * {@code offer-timeout-ms} for space before dropping the event.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InteractionIngestor {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO user_interactions (user_id, product_id, type, created_at) VALUES (?, ?, ?, ?)";
+    private static final UserInteraction.InteractionType[] TYPES = UserInteraction.InteractionType.values();
+    private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${interactions.ingest.buffer-capacity:65536}")
+    private int bufferCapacity;
+
+    @Value("${interactions.ingest.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${interactions.ingest.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${interactions.ingest.offer-timeout-ms:5}")
+    private long offerTimeoutMs;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private InteractionRingBuffer buffer;
+    private Thread writer;
+    private volatile boolean running;
+
+    // Current batch, owned by the writer thread
+    private long[] batchUserIds;
+    private long[] batchProductIds;
+    private int[] batchTypes;
+    private long[] batchTimestamps;
+    private int batchCount;
+
+    @PostConstruct
+    public void start() {
+        buffer = new InteractionRingBuffer(Integer.highestOneBit(Math.max(2, bufferCapacity - 1)) << 1);
+        batchUserIds = new long[batchSize];
+        batchProductIds = new long[batchSize];
+        batchTypes = new int[batchSize];
+        batchTimestamps = new long[batchSize];
+        running = true;
+        writer = new Thread(this::runWriter, "interaction-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        log.info("Interaction writer stopped: {}", getStats());
+    }
+
+    /**
+     * Queue an interaction for writing, returning false if it was dropped
+     */
+    public boolean record(long userId, long productId, UserInteraction.InteractionType type) {
+        long now = System.currentTimeMillis();
+        // Not tryRecord: a full buffer is only a drop once the backoff below gives up
+        if (buffer.offer(userId, productId, type.ordinal(), now)) {
+            accepted.increment();
+            return true;
+        }
+        // Backpressure: wake the writer and wait briefly for space
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+        do {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(BACKOFF_NANOS);
+            if (buffer.offer(userId, productId, type.ordinal(), now)) {
+                accepted.increment();
+                return true;
+            }
+        } while (System.nanoTime() < deadline);
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * Queue an interaction without waiting, dropping it if the buffer is full.
+     * For low-value events such as views on latency-sensitive reads.
+     */
+    public boolean tryRecord(long userId, long productId, UserInteraction.InteractionType type) {
+        return tryRecord(userId, productId, type, System.currentTimeMillis());
+    }
+
+    private boolean tryRecord(long userId, long productId, UserInteraction.InteractionType type, long timestamp) {
+        if (buffer.offer(userId, productId, type.ordinal(), timestamp)) {
+            accepted.increment();
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * Queue an interaction once the current transaction commits, so rolled back
+     * carts and orders leave no interactions behind
+     */
+    public void recordAfterCommit(long userId, long productId, UserInteraction.InteractionType type) {
+        Transactions.afterCommit(() -> record(userId, productId, type));
+    }
+
+    public Stats getStats() {
+        return new Stats(accepted.sum(), dropped.sum(), flushed.sum(), batches.sum(), failed.sum(),
+                buffer.size(), buffer.capacity());
+    }
+
+    private void runWriter() {
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (running || buffer.size() > 0) {
+            int written = flush();
+            // A full batch means more is probably waiting; otherwise wait for the next interval
+            if (written < batchSize && running) {
+                LockSupport.parkNanos(flushIntervalNanos);
+            }
+        }
+    }
+
+    private int flush() {
+        batchCount = 0;
+        int count = buffer.drain(this::collect, batchSize);
+        if (count == 0) {
+            return 0;
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, batchUserIds[i]);
+                    ps.setLong(2, batchProductIds[i]);
+                    ps.setString(3, TYPES[batchTypes[i]].name());
+                    // Same local wall-clock reading UserInteraction.createdAt gets from LocalDateTime.now()
+                    ps.setTimestamp(4, Timestamp.valueOf(LocalDateTime.ofInstant(
+                            Instant.ofEpochMilli(batchTimestamps[i]), ZoneId.systemDefault())));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return count;
+                }
+            });
+            flushed.add(count);
+            batches.increment();
+        } catch (RuntimeException e) {
+            // Drop the batch but keep the writer thread alive for the next one
+            failed.add(count);
+            log.warn("Failed to write {} interactions", count, e);
+        }
+        return count;
+    }
+
+    private void collect(long userId, long productId, int type, long timestamp) {
+        batchUserIds[batchCount] = userId;
+        batchProductIds[batchCount] = productId;
+        batchTypes[batchCount] = type;
+        batchTimestamps[batchCount] = timestamp;
+        batchCount++;
+    }
+
+    /**
+     * Ingestion counters: accepted and dropped offers, rows flushed in how many
+     * batches, rows lost to failed batches, and the current backlog
+     */
+    public record Stats(long accepted, long dropped, long flushed, long batches, long failed,
+                        int backlog, int capacity) {
+    }
+}
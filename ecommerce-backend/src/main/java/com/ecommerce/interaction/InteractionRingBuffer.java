@@ -0,0 +1,105 @@
+package com.ecommerce.interaction;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi-producer, single-consumer ring buffer of interaction
+ * events stored as primitives (user id, product id, type ordinal, timestamp).
+ *
+ * Producers claim a slot by CAS on the tail counter; each slot carries a sequence
+ * number that tells the consumer when the slot has been published and tells
+ * producers when it has been drained. Offers never block: a full buffer is
+ * reported to the caller.
+ */
+public final class InteractionRingBuffer {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final long[] userIds;
+    private final long[] productIds;
+    private final byte[] types;
+    private final long[] timestamps;
+
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    public InteractionRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        mask = capacity - 1;
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        userIds = new long[capacity];
+        productIds = new long[capacity];
+        types = new byte[capacity];
+        timestamps = new long[capacity];
+    }
+
+    /**
+     * Publish an event, returning false if the buffer is full
+     */
+    public boolean offer(long userId, long productId, int type, long timestamp) {
+        long pos = tail.get();
+        while (true) {
+            int slot = (int) pos & mask;
+            long diff = sequences.get(slot) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    userIds[slot] = userId;
+                    productIds[slot] = productId;
+                    types[slot] = (byte) type;
+                    timestamps[slot] = timestamp;
+                    // Publishes the slot contents to the consumer
+                    sequences.set(slot, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Move up to {@code max} published events to the sink, in publish order.
+     * Must only be called from the single consumer thread.
+     */
+    public int drain(Sink sink, int max) {
+        long pos = head;
+        int drained = 0;
+        while (drained < max) {
+            int slot = (int) pos & mask;
+            if (sequences.get(slot) != pos + 1) {
+                break;
+            }
+            sink.accept(userIds[slot], productIds[slot], types[slot], timestamps[slot]);
+            // Hands the slot back to producers one lap later
+            sequences.set(slot, pos + mask + 1);
+            pos++;
+            drained++;
+        }
+        head = pos;
+        return drained;
+    }
+
+    /**
+     * Approximate number of events waiting to be drained
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(tail.get() - head, mask + 1));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public interface Sink {
+        void accept(long userId, long productId, int type, long timestamp);
+    }
+}
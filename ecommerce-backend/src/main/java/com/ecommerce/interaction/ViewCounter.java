@@ -0,0 +1,77 @@
+package com.ecommerce.interaction;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind product view counter.
+ *
+ * Views are absorbed by a striped {@link LongAdder} per product and flushed
+ * periodically as relative {@code view_count = view_count + ?} updates in one
+ * JDBC batch, so a product page view never writes the products row itself.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ViewCounter {
+
+    private static final String UPDATE_SQL = "UPDATE products SET view_count = view_count + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentHashMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public void recordView(long productId) {
+        pending.computeIfAbsent(productId, id -> new LongAdder()).increment();
+    }
+
+    @Scheduled(fixedDelayString = "${interactions.views.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        // Subtract what was read instead of resetting, so views racing the flush are kept
+        List<long[]> deltas = new ArrayList<>();
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            long views = entry.getValue().sum();
+            if (views > 0) {
+                entry.getValue().add(-views);
+                deltas.add(new long[]{entry.getKey(), views});
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        // Id order keeps row locks consistent with other batched product updates
+        deltas.sort((a, b) -> Long.compare(a[0], b[0]));
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        long total = 0;
+        for (long[] delta : deltas) {
+            args.add(new Object[]{delta[1], delta[0]});
+            total += delta[1];
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, args);
+            log.debug("Flushed {} views for {} products", total, deltas.size());
+        } catch (DataAccessException e) {
+            // Put the deltas back for the next flush
+            for (long[] delta : deltas) {
+                pending.computeIfAbsent(delta[0], id -> new LongAdder()).add(delta[1]);
+            }
+            log.warn("Failed to flush view counts for {} products: {}", deltas.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,74 @@
+package com.ecommerce.inventory;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-SKU contention counters for stock updates.
+ *
+ * A decrement is counted as contended when another decrement of the same
+ * product was already in flight in this process, i.e. it most likely waited on
+ * the product's row lock. Rejections are conditional decrements that found too
+ * little stock.
+ */
+@Component
+public class StockContentionTracker {
+
+    private final ConcurrentHashMap<Long, Sku> skus = new ConcurrentHashMap<>();
+
+    /**
+     * Mark a decrement of a product as started; pair with {@link #finish}
+     */
+    public void begin(long productId) {
+        Sku sku = skus.computeIfAbsent(productId, id -> new Sku());
+        sku.attempts.increment();
+        if (sku.inFlight.getAndIncrement() > 0) {
+            sku.contended.increment();
+        }
+    }
+
+    public void finish(long productId, boolean applied, long elapsedNanos) {
+        Sku sku = skus.get(productId);
+        if (sku == null) return;
+        sku.inFlight.decrementAndGet();
+        sku.nanos.add(elapsedNanos);
+        if (!applied) {
+            sku.rejected.increment();
+        }
+    }
+
+    /**
+     * The most contended products, worst first
+     */
+    public List<SkuStats> top(int limit) {
+        return skus.entrySet().stream()
+                .map(e -> e.getValue().snapshot(e.getKey()))
+                .sorted(Comparator.comparingLong(SkuStats::contended).reversed()
+                        .thenComparing(Comparator.comparingLong(SkuStats::rejected).reversed()))
+                .limit(limit)
+                .toList();
+    }
+
+    public record SkuStats(long productId, long attempts, long contended, long rejected, double avgMillis) {
+    }
+
+    private static final class Sku {
+
+        final LongAdder attempts = new LongAdder();
+        final LongAdder contended = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        SkuStats snapshot(long productId) {
+            long n = attempts.sum();
+            return new SkuStats(productId, n, contended.sum(), rejected.sum(),
+                    n == 0 ? 0.0 : nanos.sum() / 1e6 / n);
+        }
+    }
+}
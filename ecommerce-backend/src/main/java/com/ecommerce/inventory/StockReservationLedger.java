@@ -0,0 +1,387 @@
+package com.ecommerce.inventory;
+
+import com.ecommerce.repository.InventoryTransactionRepository;
+import com.ecommerce.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory ledger of product stock and cart reservations.
+ *
+ * Products are spread over lock-striped shards by id. Each product tracks the
+ * stock last known from the database and the quantity held by carts; a cart may
+ * reserve up to {@code stock - reserved}. Holds expire after {@code hold-ttl}
+ * so abandoned carts give their stock back, and a committed order turns its
+ * holds into a stock decrement.
+ *
+ * A product enters the ledger on its first reservation, seeded with the stock
+ * the caller read, so memory grows with the products carts actually touch
+ * rather than the catalogue.
+ *
+ * The database stays authoritative. Tracked products with new inventory
+ * transactions are re-read every few seconds and all tracked products
+ * periodically; a product that changed locally while a read was in progress
+ * keeps its local value until the next pass.
+ */
+@Component
+@Slf4j
+public class StockReservationLedger {
+
+    private static final int READ_BATCH_SIZE = 1_000;
+
+    private final ProductRepository productRepository;
+    private final InventoryTransactionRepository transactionRepository;
+    private final Shard[] shards;
+    private final int mask;
+    private final long holdTtlMillis;
+
+    private final LongAdder reservations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder expiredHolds = new LongAdder();
+    private final LongAdder corrections = new LongAdder();
+
+    private volatile long transactionWatermark = -1;
+
+    public StockReservationLedger(ProductRepository productRepository,
+                                  InventoryTransactionRepository transactionRepository,
+                                  @Value("${inventory.reservation.shards:64}") int shardCount,
+                                  @Value("${inventory.reservation.hold-ttl:30m}") Duration holdTtl) {
+        this.productRepository = productRepository;
+        this.transactionRepository = transactionRepository;
+        int size = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+        this.mask = size - 1;
+        this.holdTtlMillis = holdTtl.toMillis();
+    }
+
+    /**
+     * Add to an owner's hold on a product if enough unreserved stock is left.
+     *
+     * @param knownStock stock read by the caller, used only if the ledger does
+     *                   not know the product yet
+     */
+    public boolean reserve(long ownerId, long productId, int quantity, int knownStock) {
+        requirePositive(quantity);
+        Shard shard = shardOf(productId);
+        synchronized (shard) {
+            Entry entry = shard.entry(productId, knownStock);
+            Hold hold = entry.holds.get(ownerId);
+            return setHold(entry, ownerId, hold, (hold != null ? hold.quantity : 0) + quantity);
+        }
+    }
+
+    /**
+     * Replace an owner's hold on a product, e.g. when a cart line quantity
+     * changes; use {@link #release} to drop the hold
+     */
+    public boolean adjust(long ownerId, long productId, int quantity, int knownStock) {
+        requirePositive(quantity);
+        Shard shard = shardOf(productId);
+        synchronized (shard) {
+            Entry entry = shard.entry(productId, knownStock);
+            return setHold(entry, ownerId, entry.holds.get(ownerId), quantity);
+        }
+    }
+
+    /**
+     * Give back part of an owner's hold; the hold is dropped when nothing is left
+     */
+    public void release(long ownerId, long productId, int quantity) {
+        Shard shard = shardOf(productId);
+        synchronized (shard) {
+            Entry entry = shard.entries.get(productId);
+            if (entry == null) return;
+            Hold hold = entry.holds.get(ownerId);
+            if (hold == null) return;
+            int released = Math.min(quantity, hold.quantity);
+            entry.reserved -= released;
+            hold.quantity -= released;
+            if (hold.quantity == 0) {
+                entry.holds.remove(ownerId);
+            }
+        }
+    }
+
+    public void release(long ownerId, long productId) {
+        release(ownerId, productId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Apply a committed order: stock goes down by the ordered quantities and the
+     * owner's holds on those products shrink by the same amounts. Whatever the
+     * owner added to the cart during checkout stays held.
+     *
+     * @param quantities product id -> quantity taken
+     */
+    public void commit(long ownerId, Map<Long, Integer> quantities) {
+        quantities.forEach((productId, quantity) -> {
+            Shard shard = shardOf(productId);
+            synchronized (shard) {
+                Entry entry = shard.entries.get(productId);
+                if (entry == null) return;
+                Hold hold = entry.holds.get(ownerId);
+                if (hold != null) {
+                    int consumed = Math.min(quantity, hold.quantity);
+                    entry.reserved -= consumed;
+                    hold.quantity -= consumed;
+                    if (hold.quantity == 0) {
+                        entry.holds.remove(ownerId);
+                    }
+                }
+                entry.stock -= quantity;
+                entry.changedAt = System.nanoTime();
+            }
+        });
+    }
+
+    /**
+     * Stock not held by any cart, or -1 if the product is unknown
+     */
+    public long available(long productId) {
+        Shard shard = shardOf(productId);
+        synchronized (shard) {
+            Entry entry = shard.entries.get(productId);
+            return entry != null ? Math.max(0, entry.stock - entry.reserved) : -1;
+        }
+    }
+
+    /**
+     * Forget a product so the next caller seeds it with fresh stock
+     */
+    public void evict(long productId) {
+        Shard shard = shardOf(productId);
+        synchronized (shard) {
+            Entry entry = shard.entries.get(productId);
+            if (entry != null && entry.holds.isEmpty()) {
+                shard.entries.remove(productId);
+            } else if (entry != null) {
+                // Keep the holds; the stock itself is re-read on the next sync
+                entry.stale = true;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.reservation.expiry-interval-ms:30000}")
+    public void expireHolds() {
+        long now = System.currentTimeMillis();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Entry entry : shard.entries.values()) {
+                    Iterator<Hold> it = entry.holds.values().iterator();
+                    while (it.hasNext()) {
+                        Hold hold = it.next();
+                        if (hold.expiresAt <= now) {
+                            entry.reserved -= hold.quantity;
+                            it.remove();
+                            expiredHolds.increment();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-read tracked products that have inventory transactions newer than the
+     * last pass. The first pass only sets the watermark: entries seeded after
+     * it start from a read that is at least as new.
+     */
+    @Scheduled(fixedDelayString = "${inventory.reservation.sync-interval-ms:5000}")
+    public void syncChanged() {
+        long upToId = transactionRepository.findMaxId();
+        long afterId = transactionWatermark;
+        if (afterId >= 0 && upToId > afterId) {
+            long start = System.nanoTime();
+            List<Long> changed = tracked(transactionRepository.findProductIdsChangedBetween(afterId, upToId));
+            refresh(changed, start);
+        }
+        // Stale entries have holds but unknown stock; re-read them as well
+        refresh(staleProductIds(), System.nanoTime());
+        transactionWatermark = upToId;
+    }
+
+    /**
+     * Full pass over the stock of every tracked product
+     */
+    @Scheduled(fixedDelayString = "${inventory.reservation.reconcile-interval-ms:300000}",
+               initialDelayString = "${inventory.reservation.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        long start = System.nanoTime();
+        long corrected = corrections.sum();
+        List<Long> productIds = new ArrayList<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                productIds.addAll(shard.entries.keySet());
+            }
+        }
+        refresh(productIds, start);
+        log.info("Stock ledger reconciled {} products in {} ms, {} corrections", productIds.size(),
+                (System.nanoTime() - start) / 1_000_000, corrections.sum() - corrected);
+    }
+
+    public Stats getStats() {
+        long products = 0, holds = 0, reserved = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                products += shard.entries.size();
+                for (Entry entry : shard.entries.values()) {
+                    holds += entry.holds.size();
+                    reserved += entry.reserved;
+                }
+            }
+        }
+        return new Stats(products, holds, reserved, reservations.sum(), rejections.sum(),
+                expiredHolds.sum(), corrections.sum());
+    }
+
+    /**
+     * Ledger size and counters; corrections are products whose stock differed
+     * from the database during a sync
+     */
+    public record Stats(long products, long holds, long reservedUnits, long reservations,
+                        long rejections, long expiredHolds, long corrections) {
+    }
+
+    private boolean setHold(Entry entry, long ownerId, Hold hold, int quantity) {
+        int current = hold != null ? hold.quantity : 0;
+        int delta = quantity - current;
+        if (delta > 0 && entry.stock - entry.reserved < delta) {
+            rejections.increment();
+            return false;
+        }
+        if (quantity <= 0) {
+            // Only the existing hold goes back; there is nothing below it to release
+            if (hold != null) {
+                entry.holds.remove(ownerId);
+            }
+            entry.reserved -= current;
+        } else {
+            if (hold == null) {
+                hold = new Hold();
+                entry.holds.put(ownerId, hold);
+            }
+            hold.quantity = quantity;
+            hold.expiresAt = System.currentTimeMillis() + holdTtlMillis;
+            entry.reserved += delta;
+        }
+        reservations.increment();
+        return true;
+    }
+
+    private static void requirePositive(int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+    }
+
+    /**
+     * Re-read the stock of the given products in batches small enough for an IN list
+     */
+    private void refresh(List<Long> productIds, long readStartedAt) {
+        for (int from = 0; from < productIds.size(); from += READ_BATCH_SIZE) {
+            List<Long> batch = productIds.subList(from, Math.min(from + READ_BATCH_SIZE, productIds.size()));
+            applyStockRows(productRepository.findStockRowsByIdIn(batch), readStartedAt);
+        }
+    }
+
+    /**
+     * Products the ledger does not track are seeded on their next reservation;
+     * rows for them are skipped rather than added
+     */
+    private void applyStockRows(List<Object[]> rows, long readStartedAt) {
+        for (Object[] row : rows) {
+            long productId = (Long) row[0];
+            int stock = row[1] != null ? (Integer) row[1] : 0;
+            Shard shard = shardOf(productId);
+            synchronized (shard) {
+                Entry entry = shard.entries.get(productId);
+                if (entry != null && (entry.stale || entry.changedAt < readStartedAt)) {
+                    if (entry.stock != stock) {
+                        corrections.increment();
+                        entry.stock = stock;
+                    }
+                    entry.stale = false;
+                }
+            }
+        }
+    }
+
+    private List<Long> tracked(List<Long> productIds) {
+        List<Long> tracked = new ArrayList<>();
+        for (Long productId : productIds) {
+            Shard shard = shardOf(productId);
+            synchronized (shard) {
+                if (shard.entries.containsKey(productId)) tracked.add(productId);
+            }
+        }
+        return tracked;
+    }
+
+    private List<Long> staleProductIds() {
+        List<Long> stale = new ArrayList<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.entries.forEach((productId, entry) -> {
+                    if (entry.stale) stale.add(productId);
+                });
+            }
+        }
+        return stale;
+    }
+
+    private Shard shardOf(long productId) {
+        long h = productId * 0x9E3779B97F4A7C15L;
+        return shards[(int) (h ^ (h >>> 32)) & mask];
+    }
+
+    private static final class Shard {
+
+        final Map<Long, Entry> entries = new HashMap<>();
+
+        Entry entry(long productId, int knownStock) {
+            Entry entry = entries.get(productId);
+            if (entry == null) {
+                entry = new Entry(knownStock);
+                entries.put(productId, entry);
+            } else if (entry.stale) {
+                // The caller's read is newer than the evicted stock
+                entry.stock = knownStock;
+                entry.stale = false;
+                entry.changedAt = System.nanoTime();
+            }
+            return entry;
+        }
+    }
+
+    private static final class Entry {
+
+        long stock;
+        long reserved;
+        long changedAt = System.nanoTime();
+        boolean stale;
+        final Map<Long, Hold> holds = new HashMap<>(4);
+
+        Entry(long stock) {
+            this.stock = stock;
+        }
+    }
+
+    private static final class Hold {
+
+        int quantity;
+        long expiresAt;
+    }
+}
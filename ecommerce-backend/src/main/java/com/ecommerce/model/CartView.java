@@ -0,0 +1,29 @@
+package com.ecommerce.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * A user's cart as returned by the API, with the current name, prices and
+ * stock of each product. Field names match the former ShoppingCart entity JSON.
+ * Cart and item ids are Snowflake ids, beyond the 2^53 a JavaScript number
+ * holds exactly, so they are written as strings.
+ */
+public record CartView(@JsonSerialize(using = ToStringSerializer.class) Long id,
+                       List<Item> cartItems) {
+
+    public record Item(@JsonSerialize(using = ToStringSerializer.class) Long id,
+                       Integer quantity,
+                       ItemProduct product) {
+    }
+
+    public record ItemProduct(Long id,
+                              String name,
+                              BigDecimal price,
+                              BigDecimal discountPrice,
+                              Integer stockQuantity) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.ecommerce.model;
+
+import java.util.List;
+
+/**
+ * A category with its subcategories nested, ordered by name
+ */
+public record CategoryNode(Long id,
+                           String name,
+                           String description,
+                           String imageUrl,
+                           List<CategoryNode> subCategories) {
+}
@@ -0,0 +1,14 @@
+package com.ecommerce.model;
+
+/**
+ * Flat view of a category; depth is 0 for top-level categories and subtreeSize
+ * counts the category itself and all of its descendants
+ */
+public record CategorySummary(Long id,
+                              String name,
+                              String description,
+                              String imageUrl,
+                              Long parentCategoryId,
+                              int depth,
+                              int subtreeSize) {
+}
@@ -0,0 +1,9 @@
+package com.ecommerce.model;
+
+import java.util.List;
+
+/**
+ * One keyset-paged slice of a listing; {@code nextCursor} is null on the last slice
+ */
+public record CursorPage<T>(List<T> content, String nextCursor, boolean hasNext) {
+}
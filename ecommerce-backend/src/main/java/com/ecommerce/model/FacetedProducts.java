@@ -0,0 +1,18 @@
+package com.ecommerce.model;
+
+import com.ecommerce.catalog.CatalogueFacets;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of a faceted catalogue query, with the number of matching products
+ * per category, price bucket, discount and stock facet
+ */
+public record FacetedProducts(List<ProductSummary> content,
+                              int total,
+                              Map<Long, Integer> categoryCounts,
+                              List<CatalogueFacets.PriceBucket> priceBuckets,
+                              int discountedCount,
+                              int inStockCount) {
+}
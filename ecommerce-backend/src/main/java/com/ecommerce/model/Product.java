@@ -1,16 +1,26 @@
 package com.ecommerce.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Set;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        // Keyset listings: newest first and most purchased first
+        @Index(name = "idx_products_active_created", columnList = "active, created_at, id"),
+        @Index(name = "idx_products_active_purchases", columnList = "active, purchase_count, id")
+})
+@DynamicUpdate // counters and stock are also changed by relative SQL updates
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -34,6 +44,9 @@ public class Product {
     
     private String imageUrl;
     
+    @JsonIgnoreProperties({"hibernateLazyInitializer", "parentCategory", "subCategories", "products"})
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id")
     private Category category;
@@ -56,6 +69,9 @@ public class Product {
     @Column(name = "purchase_count")
     private Long purchaseCount = 0L;
     
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL)
     private Set<InventoryTransaction> inventoryTransactions;
     
@@ -12,7 +12,7 @@ public class ProductRecommendation {
     private Long productId;
     private String productName;
     private Double score;
-    private String recommendationType; // COLLABORATIVE, CONTENT_BASED, POPULAR
+    private String recommendationType; // COLLABORATIVE, ITEM_BASED, CONTENT_BASED, POPULAR
     
     public ProductRecommendation(Long productId, String productName, Double score) {
         this.productId = productId;
@@ -0,0 +1,35 @@
+package com.ecommerce.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable copy of the product fields that carts, stock checks and
+ * recommendations read, without any JPA state
+ */
+public record ProductSnapshot(Long id,
+                              String name,
+                              BigDecimal price,
+                              BigDecimal discountPrice,
+                              Long categoryId,
+                              Boolean active,
+                              Integer stockQuantity) {
+    
+    public boolean isActive() {
+        return Boolean.TRUE.equals(active);
+    }
+    
+    public int stock() {
+        return stockQuantity != null ? stockQuantity : 0;
+    }
+    
+    /**
+     * Rough heap footprint, including the cache entry holding it
+     */
+    public int estimatedBytes() {
+        int bytes = 64 + 48 + 3 * 16; // cache node and key, this record, boxed id/category/stock
+        bytes += name != null ? 40 + name.length() : 0;
+        bytes += price != null ? 40 : 0;
+        bytes += discountPrice != null ? 40 : 0;
+        return bytes;
+    }
+}
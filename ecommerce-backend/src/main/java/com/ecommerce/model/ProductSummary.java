@@ -0,0 +1,22 @@
+package com.ecommerce.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Catalogue listing row: the columns a product card renders, selected directly
+ * by JPQL constructor expressions so listings never load Product entities,
+ * their category or inventory transactions. Purchase count and creation time
+ * are the sort keys of the keyset-paged listings.
+ */
+public record ProductSummary(Long id,
+                             String name,
+                             String description,
+                             BigDecimal price,
+                             BigDecimal discountPrice,
+                             String imageUrl,
+                             Integer stockQuantity,
+                             Long categoryId,
+                             Long purchaseCount,
+                             LocalDateTime createdAt) {
+}
@@ -0,0 +1,281 @@
+package com.ecommerce.recommendation;
+
+import com.ecommerce.repository.UserInteractionRepository;
+import com.ecommerce.util.LongDoubleHashMap;
+import com.ecommerce.util.LongIntHashMap;
+import com.ecommerce.util.TopKSelector;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Item-based recommender backed by an offline {@link ItemSimilarityModel}.
+ *
+ * A nightly job computes the top-K neighbours of every product using weighted
+ * cosine similarity over the interaction matrix and persists them to a binary
+ * file. Later runs only recompute the rows that can have changed since the
+ * previous model's watermark: those of products with new interactions and of
+ * every product sharing a user with one, or listing one as a neighbour. Other
+ * rows are carried over, so the result equals a full rebuild.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ItemBasedRecommender {
+
+    private final RecommendationEngine recommendationEngine;
+    private final UserInteractionRepository interactionRepository;
+
+    @Value("${ml.recommendation.algorithm:collaborative-filtering}")
+    private String algorithm;
+
+    @Value("${ml.recommendation.item-based.neighbours:50}")
+    private int neighbours;
+
+    @Value("${ml.recommendation.item-based.model-file:data/item-similarity.bin}")
+    private String modelFile;
+
+    private volatile ItemSimilarityModel model;
+
+    @PostConstruct
+    public void loadModel() {
+        Path file = Paths.get(modelFile);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            model = ItemSimilarityModel.readFrom(file);
+            log.info("Loaded item similarity model: {} products, watermark {}",
+                    model.productCount(), model.getWatermark());
+        } catch (IOException e) {
+            log.warn("Failed to load item similarity model from {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Build the model once at startup when item-based mode is on and no model file exists
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildMissingModel() {
+        if (model == null && RecommendationMode.fromProperty(algorithm) == RecommendationMode.ITEM_BASED) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Nightly incremental rebuild
+     */
+    @Scheduled(cron = "${ml.recommendation.item-based.rebuild-cron:0 0 3 * * *}")
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        recommendationEngine.refresh();
+        UserItemMatrix m = recommendationEngine.getMatrix();
+        ItemSimilarityModel previous = model;
+        long watermark = m.maxInteractionId();
+
+        boolean full = previous == null || previous.getNeighbours() != neighbours;
+        List<Long> touched = null;
+        if (!full) {
+            if (previous.getWatermark() >= watermark) {
+                log.info("Item similarity model is up to date (watermark {})", watermark);
+                return;
+            }
+            touched = interactionRepository.findProductIdsTouchedBetween(previous.getWatermark(), watermark);
+        }
+
+        int[] targets = full ? allProducts(m) : affectedBy(m, previous, touched);
+        ItemSimilarityModel rebuilt = build(m, full ? null : previous, targets, watermark);
+        model = rebuilt;
+
+        try {
+            rebuilt.writeTo(Paths.get(modelFile));
+        } catch (IOException e) {
+            log.warn("Failed to persist item similarity model to {}: {}", modelFile, e.getMessage());
+        }
+        log.info("Item similarity model {} rebuilt: {} products recomputed, {} rows, {} ms",
+                full ? "fully" : "incrementally", targets.length, rebuilt.productCount(),
+                System.currentTimeMillis() - start);
+    }
+
+    public ItemSimilarityModel getModel() {
+        return model;
+    }
+
+    public boolean hasModel() {
+        return model != null;
+    }
+
+    /**
+     * Recompute the target rows, on top of the previous model's rows if there is one
+     */
+    ItemSimilarityModel build(UserItemMatrix m, ItemSimilarityModel previous, int[] targets, long watermark) {
+        ItemSimilarityModel.Builder builder = new ItemSimilarityModel.Builder(neighbours);
+        if (previous != null) {
+            builder.copyOf(previous);
+        }
+        computeNeighbours(m, targets, builder);
+        return builder.build(watermark);
+    }
+
+    static int[] allProducts(UserItemMatrix m) {
+        int[] products = new int[m.productCount()];
+        for (int p = 0; p < products.length; p++) {
+            products[p] = p;
+        }
+        return products;
+    }
+
+    /**
+     * Products whose rows may differ after interactions on the touched products.
+     * A similarity changes only when one side of the pair was touched, so this
+     * is the touched products, every product sharing a user with one (its row
+     * may gain or re-rank a touched product) and every product whose current
+     * row lists one (a touched neighbour may have dropped out of the top-K).
+     * Rows listing a product that is gone or inactive are recomputed as well.
+     */
+    static int[] affectedBy(UserItemMatrix m, ItemSimilarityModel previous, List<Long> touchedIds) {
+        boolean[] affected = new boolean[m.productCount()];
+        for (long productId : touchedIds) {
+            int p = m.productIndexOf(productId);
+            if (p == LongIntHashMap.NO_VALUE) continue;
+            affected[p] = true;
+            for (int pos = m.colStart(p); pos < m.colEnd(p); pos++) {
+                int user = m.rowAt(pos);
+                for (int r = m.rowStart(user); r < m.rowEnd(user); r++) {
+                    affected[m.colAt(r)] = true;
+                }
+            }
+        }
+        Set<Long> touched = new HashSet<>(touchedIds);
+        for (int row = 0; row < previous.productCount(); row++) {
+            for (int pos = previous.rowStart(row); pos < previous.rowEnd(row); pos++) {
+                long neighbourId = previous.neighbourAt(pos);
+                int neighbour = m.productIndexOf(neighbourId);
+                if (touched.contains(neighbourId) || neighbour == LongIntHashMap.NO_VALUE || !m.isActive(neighbour)) {
+                    int p = m.productIndexOf(previous.productAt(row));
+                    if (p != LongIntHashMap.NO_VALUE) {
+                        affected[p] = true;
+                    }
+                    break;
+                }
+            }
+        }
+        int count = 0;
+        int[] targets = new int[affected.length];
+        for (int p = 0; p < affected.length; p++) {
+            if (affected[p]) {
+                targets[count++] = p;
+            }
+        }
+        return Arrays.copyOf(targets, count);
+    }
+
+    /**
+     * Score products for a user by summing the neighbour lists of the products
+     * the user interacted with, weighted by the user's interaction weight.
+     *
+     * @return product id -> score, or null if the user has no interactions or
+     *         no model has been built yet
+     */
+    public LongDoubleHashMap score(long userId) {
+        ItemSimilarityModel current = model;
+        if (current == null) {
+            return null;
+        }
+        UserItemMatrix m = recommendationEngine.getMatrix();
+        int user = m.userIndexOf(userId);
+        if (user == LongIntHashMap.NO_VALUE || m.rowLength(user) == 0) {
+            return null;
+        }
+
+        LongDoubleHashMap productScores = new LongDoubleHashMap();
+        for (int pos = m.rowStart(user); pos < m.rowEnd(user); pos++) {
+            int row = current.rowOf(m.productId(m.colAt(pos)));
+            if (row == LongIntHashMap.NO_VALUE) continue;
+            double weight = m.weightAt(pos);
+            for (int n = current.rowStart(row); n < current.rowEnd(row); n++) {
+                long neighbourId = current.neighbourAt(n);
+                int neighbour = m.productIndexOf(neighbourId);
+                if (neighbour != LongIntHashMap.NO_VALUE && m.contains(user, neighbour)) continue;
+                productScores.addTo(neighbourId, weight * current.similarityAt(n));
+            }
+        }
+        return productScores;
+    }
+
+    /**
+     * Weighted cosine top-K for the target products. Dot products are accumulated
+     * in a dense array over product indices through the CSC/CSR arrays.
+     */
+    private void computeNeighbours(UserItemMatrix m, int[] targets, ItemSimilarityModel.Builder builder) {
+        int products = m.productCount();
+        double[] norms = new double[products];
+        for (int p = 0; p < products; p++) {
+            double sum = 0;
+            for (int pos = m.colStart(p); pos < m.colEnd(p); pos++) {
+                double w = m.colWeightAt(pos);
+                sum += w * w;
+            }
+            norms[p] = Math.sqrt(sum);
+        }
+
+        double[] dot = new double[products];
+        int[] touched = new int[products];
+
+        for (int p : targets) {
+            if (norms[p] == 0) {
+                builder.put(m.productId(p), new long[0], new float[0]);
+                continue;
+            }
+            int touchedCount = 0;
+            for (int pos = m.colStart(p); pos < m.colEnd(p); pos++) {
+                int user = m.rowAt(pos);
+                double userWeight = m.colWeightAt(pos);
+                for (int r = m.rowStart(user); r < m.rowEnd(user); r++) {
+                    int q = m.colAt(r);
+                    if (q == p) continue;
+                    if (dot[q] == 0) {
+                        touched[touchedCount++] = q;
+                    }
+                    dot[q] += userWeight * m.weightAt(r);
+                }
+            }
+
+            // Bounded top-K keeps the most similar active neighbours
+            TopKSelector topK = new TopKSelector(neighbours);
+            for (int i = 0; i < touchedCount; i++) {
+                int q = touched[i];
+                double similarity = dot[q] / (norms[p] * norms[q]);
+                dot[q] = 0;
+                if (m.isActive(q)) {
+                    topK.offer(m.productId(q), similarity);
+                }
+            }
+            topK.sort();
+
+            long[] ids = new long[topK.size()];
+            float[] sims = new float[topK.size()];
+            for (int rank = 0; rank < ids.length; rank++) {
+                ids[rank] = topK.idAt(rank);
+                sims[rank] = (float) topK.scoreAt(rank);
+            }
+            builder.put(m.productId(p), ids, sims);
+        }
+    }
+}
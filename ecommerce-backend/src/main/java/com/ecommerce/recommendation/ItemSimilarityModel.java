@@ -0,0 +1,218 @@
+package com.ecommerce.recommendation;
+
+import com.ecommerce.util.LongIntHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable top-K item-item neighbour lists.
+ *
+ * Rows are stored CSR-style: one contiguous run of (neighbour id, similarity) per
+ * product, sorted by descending similarity. The model records the highest
+ * interaction id it was computed from so rebuilds can be incremental.
+ *
+ * Binary layout: magic, version, watermark, K, row count, then per row the
+ * product id, the neighbour count and (neighbour id, float similarity) pairs.
+ */
+public final class ItemSimilarityModel {
+
+    private static final int MAGIC = 0x4954534D; // "ITSM"
+    private static final int VERSION = 1;
+
+    private final long watermark;
+    private final int neighbours;
+    private final long[] productIds;
+    private final LongIntHashMap rowIndex;
+    private final int[] ptr;
+    private final long[] neighbourIds;
+    private final float[] similarities;
+
+    private ItemSimilarityModel(long watermark, int neighbours, long[] productIds,
+                                int[] ptr, long[] neighbourIds, float[] similarities) {
+        this.watermark = watermark;
+        this.neighbours = neighbours;
+        this.productIds = productIds;
+        this.ptr = ptr;
+        this.neighbourIds = neighbourIds;
+        this.similarities = similarities;
+        this.rowIndex = new LongIntHashMap(productIds.length);
+        for (int row = 0; row < productIds.length; row++) {
+            rowIndex.put(productIds[row], row);
+        }
+    }
+
+    /**
+     * Highest interaction id included in the model
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Maximum neighbours kept per product
+     */
+    public int getNeighbours() {
+        return neighbours;
+    }
+
+    public int productCount() {
+        return productIds.length;
+    }
+
+    public long productAt(int row) {
+        return productIds[row];
+    }
+
+    /**
+     * Row of a product, or -1 if the product has no neighbours
+     */
+    public int rowOf(long productId) {
+        return rowIndex.get(productId);
+    }
+
+    public int rowStart(int row) {
+        return ptr[row];
+    }
+
+    public int rowEnd(int row) {
+        return ptr[row + 1];
+    }
+
+    public long neighbourAt(int pos) {
+        return neighbourIds[pos];
+    }
+
+    public float similarityAt(int pos) {
+        return similarities[pos];
+    }
+
+    /**
+     * Write the model atomically: to a temporary sibling first, then moved into place
+     */
+    public void writeTo(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(watermark);
+            out.writeInt(neighbours);
+            out.writeInt(productIds.length);
+            for (int row = 0; row < productIds.length; row++) {
+                out.writeLong(productIds[row]);
+                out.writeInt(ptr[row + 1] - ptr[row]);
+                for (int pos = ptr[row]; pos < ptr[row + 1]; pos++) {
+                    out.writeLong(neighbourIds[pos]);
+                    out.writeFloat(similarities[pos]);
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static ItemSimilarityModel readFrom(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an item similarity model: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported item similarity model version: " + version);
+            }
+            long watermark = in.readLong();
+            int neighbours = in.readInt();
+            int rows = in.readInt();
+            long[] productIds = new long[rows];
+            int[] ptr = new int[rows + 1];
+            long[] neighbourIds = new long[Math.max(16, rows)];
+            float[] similarities = new float[neighbourIds.length];
+            int nnz = 0;
+            for (int row = 0; row < rows; row++) {
+                productIds[row] = in.readLong();
+                int n = in.readInt();
+                if (nnz + n > neighbourIds.length) {
+                    int capacity = Math.max(nnz + n, neighbourIds.length * 2);
+                    neighbourIds = Arrays.copyOf(neighbourIds, capacity);
+                    similarities = Arrays.copyOf(similarities, capacity);
+                }
+                for (int i = 0; i < n; i++) {
+                    neighbourIds[nnz] = in.readLong();
+                    similarities[nnz++] = in.readFloat();
+                }
+                ptr[row + 1] = nnz;
+            }
+            return new ItemSimilarityModel(watermark, neighbours, productIds, ptr,
+                    Arrays.copyOf(neighbourIds, nnz), Arrays.copyOf(similarities, nnz));
+        }
+    }
+
+    /**
+     * Collects neighbour rows, optionally starting from a previous model
+     */
+    public static final class Builder {
+
+        private final int neighbours;
+        private final Map<Long, Row> rows = new HashMap<>();
+
+        public Builder(int neighbours) {
+            this.neighbours = neighbours;
+        }
+
+        /**
+         * Start from all rows of an existing model
+         */
+        public Builder copyOf(ItemSimilarityModel model) {
+            for (int row = 0; row < model.productIds.length; row++) {
+                int start = model.ptr[row], end = model.ptr[row + 1];
+                rows.put(model.productIds[row], new Row(
+                        Arrays.copyOfRange(model.neighbourIds, start, end),
+                        Arrays.copyOfRange(model.similarities, start, end)));
+            }
+            return this;
+        }
+
+        /**
+         * Replace the row of a product; neighbours must be sorted by descending similarity
+         */
+        public Builder put(long productId, long[] neighbourIds, float[] similarities) {
+            if (neighbourIds.length == 0) {
+                rows.remove(productId);
+            } else {
+                rows.put(productId, new Row(neighbourIds, similarities));
+            }
+            return this;
+        }
+
+        public ItemSimilarityModel build(long watermark) {
+            long[] productIds = rows.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            int[] ptr = new int[productIds.length + 1];
+            for (int row = 0; row < productIds.length; row++) {
+                ptr[row + 1] = ptr[row] + rows.get(productIds[row]).ids().length;
+            }
+            long[] neighbourIds = new long[ptr[productIds.length]];
+            float[] similarities = new float[neighbourIds.length];
+            for (int row = 0; row < productIds.length; row++) {
+                Row r = rows.get(productIds[row]);
+                System.arraycopy(r.ids(), 0, neighbourIds, ptr[row], r.ids().length);
+                System.arraycopy(r.similarities(), 0, similarities, ptr[row], r.ids().length);
+            }
+            return new ItemSimilarityModel(watermark, neighbours, productIds, ptr, neighbourIds, similarities);
+        }
+
+        private record Row(long[] ids, float[] similarities) {
+        }
+    }
+}
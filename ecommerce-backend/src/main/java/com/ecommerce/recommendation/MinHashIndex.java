@@ -0,0 +1,186 @@
+package com.ecommerce.recommendation;
+
+import com.ecommerce.util.IntSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MinHash signatures with LSH banding for approximate Jaccard neighbour search.
+ *
+ * Every user keeps a fixed-size int[] signature (bands x rows-per-band minimum
+ * hashes over the user's product ids), updated incrementally as interactions
+ * arrive. Each band of a signature is hashed into a bucket; users sharing any
+ * bucket with the target become neighbour candidates. Two users with Jaccard
+ * similarity s collide with probability 1 - (1 - s^rows)^bands, so more bands
+ * raise recall and more rows per band raise precision.
+ */
+@Component
+public class MinHashIndex {
+
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final int bands;
+    private final int rowsPerBand;
+    private final long[] hashA;
+    private final long[] hashB;
+
+    private final ConcurrentHashMap<Long, Signature> signatures = new ConcurrentHashMap<>();
+    // Bucket members are dense ordinals of the user ids
+    private final ConcurrentHashMap<Long, IntSet> buckets = new ConcurrentHashMap<>();
+    private final UserOrdinals userOrdinals = new UserOrdinals();
+
+    private volatile boolean seeded;
+
+    public MinHashIndex(@Value("${ml.recommendation.lsh.bands:16}") int bands,
+                        @Value("${ml.recommendation.lsh.rows-per-band:2}") int rowsPerBand) {
+        this.bands = bands;
+        this.rowsPerBand = rowsPerBand;
+        int size = bands * rowsPerBand;
+        hashA = new long[size];
+        hashB = new long[size];
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < size; i++) {
+            hashA[i] = random.nextLong() | 1L;
+            hashB[i] = random.nextLong();
+        }
+    }
+
+    public boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Fold every row of a matrix snapshot into the signatures. Signatures only
+     * ever decrease, so this is safe to run while interactions keep arriving.
+     */
+    public void addAll(UserItemMatrix matrix) {
+        int[] hashes = new int[hashA.length];
+        for (int user = 0; user < matrix.userCount(); user++) {
+            if (matrix.rowLength(user) == 0) continue;
+            Arrays.fill(hashes, Integer.MAX_VALUE);
+            for (int pos = matrix.rowStart(user); pos < matrix.rowEnd(user); pos++) {
+                long productId = matrix.productId(matrix.colAt(pos));
+                for (int i = 0; i < hashes.length; i++) {
+                    hashes[i] = Math.min(hashes[i], hash(i, productId));
+                }
+            }
+            merge(matrix.userId(user), hashes);
+        }
+        seeded = true;
+    }
+
+    public void add(long userId, long productId) {
+        int[] hashes = new int[hashA.length];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = hash(i, productId);
+        }
+        merge(userId, hashes);
+    }
+
+    /**
+     * Users sharing at least one LSH bucket with the given user. The result may
+     * contain duplicates and the user itself.
+     */
+    public long[] candidates(long userId) {
+        Signature signature = signatures.get(userId);
+        if (signature == null) {
+            return new long[0];
+        }
+        long[] keys;
+        synchronized (signature) {
+            keys = Arrays.copyOf(signature.bucketKeys, bands);
+        }
+        long[] result = new long[16];
+        int size = 0;
+        for (long key : keys) {
+            IntSet members = buckets.get(key);
+            if (members == null) continue;
+            synchronized (members) {
+                if (size + members.size() > result.length) {
+                    result = Arrays.copyOf(result, Math.max(size + members.size(), result.length * 2));
+                }
+                for (int i = 0; i < members.size(); i++) {
+                    result[size++] = userOrdinals.userId(members.get(i));
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    public int userCount() {
+        return signatures.size();
+    }
+
+    private void merge(long userId, int[] hashes) {
+        Signature signature = signatures.computeIfAbsent(userId, id -> new Signature(hashA.length, bands));
+        int user = userOrdinals.ordinalOf(userId);
+        synchronized (signature) {
+            boolean changed = false;
+            for (int i = 0; i < hashes.length; i++) {
+                if (hashes[i] < signature.values[i]) {
+                    signature.values[i] = hashes[i];
+                    changed = true;
+                }
+            }
+            if (!changed) return;
+
+            for (int band = 0; band < bands; band++) {
+                long key = bucketKey(band, signature.values);
+                long previous = signature.bucketKeys[band];
+                if (key == previous) continue;
+                if (previous != Signature.NO_BUCKET) {
+                    IntSet old = buckets.get(previous);
+                    if (old != null) {
+                        synchronized (old) {
+                            old.remove(user);
+                        }
+                    }
+                }
+                IntSet members = buckets.computeIfAbsent(key, k -> new IntSet());
+                synchronized (members) {
+                    members.add(user);
+                }
+                signature.bucketKeys[band] = key;
+            }
+        }
+    }
+
+    private long bucketKey(int band, int[] values) {
+        int h = 1;
+        for (int i = band * rowsPerBand; i < (band + 1) * rowsPerBand; i++) {
+            h = 31 * h + values[i];
+        }
+        return ((long) band << 32) | (h & 0xFFFFFFFFL);
+    }
+
+    /**
+     * i-th hash function: a random odd multiplier and offset followed by the
+     * SplitMix64 finalizer, folded to an int
+     */
+    private int hash(int i, long productId) {
+        long h = productId * hashA[i] + hashB[i];
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static final class Signature {
+
+        static final long NO_BUCKET = -1L;
+
+        final int[] values;
+        final long[] bucketKeys;
+
+        Signature(int size, int bands) {
+            values = new int[size];
+            Arrays.fill(values, Integer.MAX_VALUE);
+            bucketKeys = new long[bands];
+            Arrays.fill(bucketKeys, NO_BUCKET);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.ecommerce.recommendation;
+
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.util.LongIntHashMap;
+import com.ecommerce.util.TopKSelector;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Materialized popularity ranking of active products, globally and per category.
+ *
+ * Rebuilt from the products table on a schedule and kept current between
+ * rebuilds from purchase and view events. Scores only grow, so an event can move
+ * a product up or into a ranked list but never out of it, and each list can be
+ * maintained in place.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PopularityRanking {
+
+    private static final int LOAD_BATCH_SIZE = 50_000;
+
+    private final ProductRepository productRepository;
+
+    @Value("${ml.recommendation.popular.max-ranked:1000}")
+    private int maxRanked;
+
+    private volatile State state;
+
+    /**
+     * Calculate popularity score based on purchases and views
+     */
+    public static double calculatePopularityScore(long purchases, long views) {
+        return (purchases * 10.0) + (views * 0.1);
+    }
+
+    @Scheduled(fixedDelayString = "${ml.recommendation.popular.refresh-interval-ms:300000}")
+    public void refresh() {
+        long start = System.currentTimeMillis();
+        State rebuilt = load();
+        state = rebuilt;
+        log.info("Popularity ranking rebuilt: {} products, {} categories in {} ms",
+                rebuilt.productIds.length, rebuilt.categoryLists.length, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Top products across the catalogue, best first
+     */
+    public Ranking top(int count) {
+        return getState().global.top(count);
+    }
+
+    /**
+     * Top products of a single category, best first
+     */
+    public Ranking top(long categoryId, int count) {
+        State current = getState();
+        int category = current.categoryIndex.get(categoryId);
+        if (category == LongIntHashMap.NO_VALUE) {
+            return Ranking.EMPTY;
+        }
+        return current.categoryLists[category].top(count);
+    }
+
+    public void recordPurchase(long productId, int quantity) {
+        State current = state;
+        if (current == null) return;
+        int product = Arrays.binarySearch(current.productIds, productId);
+        if (product < 0) return; // created after the last rebuild
+        current.purchases.addAndGet(product, quantity);
+        current.promote(product);
+    }
+
+    public void recordView(long productId) {
+        State current = state;
+        if (current == null) return;
+        int product = Arrays.binarySearch(current.productIds, productId);
+        if (product < 0) return;
+        current.views.incrementAndGet(product);
+        current.promote(product);
+    }
+
+    private State getState() {
+        State current = state;
+        if (current == null) {
+            synchronized (this) {
+                current = state;
+                if (current == null) {
+                    refresh();
+                    current = state;
+                }
+            }
+        }
+        return current;
+    }
+
+    private State load() {
+        long[] ids = new long[1 << 12];
+        long[] categories = new long[ids.length];
+        long[] purchases = new long[ids.length];
+        long[] views = new long[ids.length];
+        int size = 0;
+
+        long afterId = 0L;
+        List<Object[]> rows;
+        do {
+            rows = productRepository.findPopularityRowsAfter(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (Object[] row : rows) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    categories = Arrays.copyOf(categories, size * 2);
+                    purchases = Arrays.copyOf(purchases, size * 2);
+                    views = Arrays.copyOf(views, size * 2);
+                }
+                afterId = (Long) row[0];
+                ids[size] = afterId;
+                categories[size] = row[1] != null ? (Long) row[1] : 0L;
+                purchases[size] = row[2] != null ? (Long) row[2] : 0L;
+                views[size] = row[3] != null ? (Long) row[3] : 0L;
+                size++;
+            }
+        } while (rows.size() == LOAD_BATCH_SIZE);
+
+        return new State(Arrays.copyOf(ids, size), Arrays.copyOf(categories, size),
+                Arrays.copyOf(purchases, size), Arrays.copyOf(views, size), maxRanked);
+    }
+
+    /**
+     * Product ids and scores, best first
+     */
+    public record Ranking(long[] productIds, double[] scores) {
+
+        static final Ranking EMPTY = new Ranking(new long[0], new double[0]);
+
+        public int size() {
+            return productIds.length;
+        }
+    }
+
+    /**
+     * One rebuild: per-product counters (ids ascending) plus the ranked lists
+     */
+    private static final class State {
+
+        final long[] productIds;
+        final int[] categoryOf;
+        final AtomicLongArray purchases;
+        final AtomicLongArray views;
+        final LongIntHashMap categoryIndex = new LongIntHashMap();
+        final RankedList global;
+        final RankedList[] categoryLists;
+
+        State(long[] productIds, long[] categoryIds, long[] purchases, long[] views, int capacity) {
+            this.productIds = productIds;
+            this.purchases = new AtomicLongArray(purchases);
+            this.views = new AtomicLongArray(views);
+            this.categoryOf = new int[productIds.length];
+            int categories = 0;
+            for (int p = 0; p < productIds.length; p++) {
+                if (categoryIds[p] == 0) {
+                    categoryOf[p] = -1;
+                    continue;
+                }
+                int c = categoryIndex.putIfAbsent(categoryIds[p], categories);
+                if (c == categories) {
+                    categories++;
+                }
+                categoryOf[p] = c;
+            }
+
+            TopKSelector globalTop = new TopKSelector(capacity);
+            TopKSelector[] categoryTop = new TopKSelector[categories];
+            for (int p = 0; p < productIds.length; p++) {
+                double score = calculatePopularityScore(purchases[p], views[p]);
+                globalTop.offer(productIds[p], score);
+                if (categoryOf[p] >= 0) {
+                    if (categoryTop[categoryOf[p]] == null) {
+                        categoryTop[categoryOf[p]] = new TopKSelector(capacity);
+                    }
+                    categoryTop[categoryOf[p]].offer(productIds[p], score);
+                }
+            }
+            global = new RankedList(globalTop.sort(), capacity);
+            categoryLists = new RankedList[categories];
+            for (int c = 0; c < categories; c++) {
+                categoryLists[c] = new RankedList(categoryTop[c].sort(), capacity);
+            }
+        }
+
+        void promote(int product) {
+            double score = calculatePopularityScore(purchases.get(product), views.get(product));
+            global.offer(productIds[product], score);
+            if (categoryOf[product] >= 0) {
+                categoryLists[categoryOf[product]].offer(productIds[product], score);
+            }
+        }
+    }
+
+    /**
+     * Bounded best-first list supporting in-place score increases
+     */
+    private static final class RankedList {
+
+        private final long[] ids;
+        private final double[] scores;
+        private int size;
+
+        RankedList(TopKSelector sorted, int capacity) {
+            ids = new long[capacity];
+            scores = new double[capacity];
+            size = sorted.size();
+            for (int rank = 0; rank < size; rank++) {
+                ids[rank] = sorted.idAt(rank);
+                scores[rank] = sorted.scoreAt(rank);
+            }
+        }
+
+        synchronized Ranking top(int count) {
+            int n = Math.min(count, size);
+            return new Ranking(Arrays.copyOf(ids, n), Arrays.copyOf(scores, n));
+        }
+
+        /**
+         * Raise a product's score, inserting it if it now ranks within capacity
+         */
+        synchronized void offer(long id, double score) {
+            int pos = -1;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    pos = i;
+                    break;
+                }
+            }
+            if (pos < 0) {
+                if (size < ids.length) {
+                    pos = size++;
+                } else if (size > 0 && score > scores[size - 1]) {
+                    pos = size - 1;
+                } else {
+                    return;
+                }
+            }
+            // Shift the entries the product now outranks down by one
+            while (pos > 0 && (score > scores[pos - 1] || (score == scores[pos - 1] && id < ids[pos - 1]))) {
+                ids[pos] = ids[pos - 1];
+                scores[pos] = scores[pos - 1];
+                pos--;
+            }
+            ids[pos] = id;
+            scores[pos] = score;
+        }
+    }
+}
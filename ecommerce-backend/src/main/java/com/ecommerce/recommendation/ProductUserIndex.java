@@ -0,0 +1,76 @@
+package com.ecommerce.recommendation;
+
+import com.ecommerce.util.IntSet;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index from product id to the ids of the users who interacted with it.
+ *
+ * Seeded from each matrix rebuild and kept current from interaction writes, so
+ * neighbour search only visits users that share at least one product with the
+ * target. Posting lists hold dense int ordinals of the user ids to stay compact.
+ */
+@Component
+public class ProductUserIndex {
+
+    private static final long[] NO_USERS = new long[0];
+
+    private final ConcurrentHashMap<Long, IntSet> usersByProduct = new ConcurrentHashMap<>();
+    private final UserOrdinals userOrdinals = new UserOrdinals();
+
+    public void add(long productId, long userId) {
+        int user = userOrdinals.ordinalOf(userId);
+        IntSet users = usersByProduct.computeIfAbsent(productId, id -> new IntSet());
+        synchronized (users) {
+            users.add(user);
+        }
+    }
+
+    /**
+     * Merge every user/product pair of a matrix snapshot into the index
+     */
+    public void addAll(UserItemMatrix matrix) {
+        int[] ordinalOfRow = new int[matrix.userCount()];
+        for (int user = 0; user < ordinalOfRow.length; user++) {
+            ordinalOfRow[user] = userOrdinals.ordinalOf(matrix.userId(user));
+        }
+        for (int product = 0; product < matrix.productCount(); product++) {
+            int start = matrix.colStart(product), end = matrix.colEnd(product);
+            if (start == end) continue;
+            int[] column = new int[end - start];
+            for (int pos = start; pos < end; pos++) {
+                column[pos - start] = ordinalOfRow[matrix.rowAt(pos)];
+            }
+            Arrays.sort(column);
+            IntSet users = usersByProduct.computeIfAbsent(matrix.productId(product), id -> new IntSet());
+            synchronized (users) {
+                users.addAll(column);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the ids of the users that interacted with a product, in no particular order
+     */
+    public long[] usersOf(long productId) {
+        IntSet users = usersByProduct.get(productId);
+        if (users == null) {
+            return NO_USERS;
+        }
+        long[] userIds;
+        synchronized (users) {
+            userIds = new long[users.size()];
+            for (int i = 0; i < userIds.length; i++) {
+                userIds[i] = userOrdinals.userId(users.get(i));
+            }
+        }
+        return userIds;
+    }
+
+    public int productCount() {
+        return usersByProduct.size();
+    }
+}
@@ -0,0 +1,231 @@
+package com.ecommerce.recommendation;
+
+import com.ecommerce.cache.CacheRegions;
+import com.ecommerce.model.ProductRecommendation;
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Per-user cache of computed recommendation lists, in the
+ * {@code recommendations} cache region.
+ *
+ * Each user keeps only the deepest list computed so far; smaller requests are
+ * served by slicing its prefix, which matches what a shallower computation would
+ * have returned because rankings are deterministic. A new interaction marks the
+ * user's entry stale in O(1).
+ *
+ * In serve-stale mode a stale entry is returned immediately and recomputed on the
+ * bounded refresh executor. Concurrent loads for the same user share one
+ * computation, so a burst of requests for a cold user runs the pipeline once.
+ */
+@Component
+@Slf4j
+public class RecommendationCache {
+
+    private static final String REGION = "recommendations";
+
+    private final CacheRegions cacheRegions;
+    private final Cache<Long, Entry> entries;
+    private final ConcurrentHashMap<Long, Load> inFlight = new ConcurrentHashMap<>();
+    private final Executor refreshExecutor;
+    private final boolean serveStale;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejectedRefreshes = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public RecommendationCache(CacheRegions cacheRegions,
+                               @Value("${ml.recommendation.cache.serve-stale:true}") boolean serveStale,
+                               @Qualifier("recommendationRefreshExecutor") Executor refreshExecutor) {
+        this.cacheRegions = cacheRegions;
+        this.entries = cacheRegions.cache(REGION);
+        this.serveStale = serveStale;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Get the top {@code count} recommendations of a user, computing them with
+     * {@code loader} (called with the depth to compute) when the cached list is
+     * missing, too shallow, or stale and serve-stale is off
+     */
+    public List<ProductRecommendation> get(long userId, int count, IntFunction<List<ProductRecommendation>> loader) {
+        Entry cached = entries.getIfPresent(userId);
+        if (cached != null && cached.depth() >= count) {
+            if (!cached.stale()) {
+                hits.increment();
+                return cached.slice(count);
+            }
+            if (serveStale) {
+                staleHits.increment();
+                refreshAsync(userId, cached, loader);
+                return cached.slice(count);
+            }
+        }
+        if (cached == null) {
+            misses.increment();
+        } else {
+            refreshes.increment();
+        }
+
+        // Recompute at least as deep as before so smaller requests keep hitting
+        int depth = cached != null ? Math.max(count, cached.depth()) : count;
+        return load(userId, cached, depth, loader).slice(count);
+    }
+
+    /**
+     * Mark a user's cached list stale after a new interaction
+     */
+    public void invalidate(long userId) {
+        if (entries.asMap().computeIfPresent(userId, (id, entry) -> entry.markStale()) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    public Stats getStats() {
+        return new Stats(entries.estimatedSize(), hits.sum(), staleHits.sum(), misses.sum(), refreshes.sum(),
+                coalesced.sum(), rejectedRefreshes.sum(), invalidations.sum());
+    }
+
+    /**
+     * Compute on the calling thread, or wait for an in-flight load that is deep enough
+     */
+    private Entry load(long userId, Entry observed, int depth, IntFunction<List<ProductRecommendation>> loader) {
+        Load load = new Load(depth);
+        Load existing = inFlight.putIfAbsent(userId, load);
+        if (existing != null) {
+            if (existing.depth() >= depth) {
+                coalesced.increment();
+                return await(existing);
+            }
+            // A shallower load is running; compute independently rather than wait twice
+            return store(userId, observed, compute(depth, loader));
+        }
+        run(userId, observed, load, loader);
+        return await(load);
+    }
+
+    /**
+     * Recompute a stale entry in the background unless a load is already running
+     */
+    private void refreshAsync(long userId, Entry observed, IntFunction<List<ProductRecommendation>> loader) {
+        Load load = new Load(observed.depth());
+        if (inFlight.putIfAbsent(userId, load) != null) {
+            coalesced.increment();
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> run(userId, observed, load, loader));
+        } catch (RejectedExecutionException e) {
+            // Refresh queue is full: keep serving the stale list
+            rejectedRefreshes.increment();
+            inFlight.remove(userId, load);
+            load.future().complete(observed);
+        }
+    }
+
+    private void run(long userId, Entry observed, Load load, IntFunction<List<ProductRecommendation>> loader) {
+        try {
+            load.future().complete(store(userId, observed, compute(load.depth(), loader)));
+        } catch (RuntimeException e) {
+            log.warn("Failed to compute recommendations for user {}: {}", userId, e.getMessage());
+            load.future().completeExceptionally(e);
+        } catch (Error e) {
+            // Fail waiters too, or coalesced requests would block on the future forever
+            load.future().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(userId, load);
+        }
+    }
+
+    private Entry compute(int depth, IntFunction<List<ProductRecommendation>> loader) {
+        long start = System.nanoTime();
+        Entry entry = new Entry(List.copyOf(loader.apply(depth)), depth, false);
+        cacheRegions.recordLoad(REGION, System.nanoTime() - start);
+        return entry;
+    }
+
+    private Entry store(long userId, Entry observed, Entry computed) {
+        entries.asMap().compute(userId, (id, current) -> {
+            if (current == null || current == observed) {
+                return computed;
+            }
+            // Invalidated while computing: keep the stale marker for the next read
+            if (current.stale()) {
+                return current;
+            }
+            return current.depth() > computed.depth() ? current : computed;
+        });
+        return computed;
+    }
+
+    private static Entry await(Load load) {
+        try {
+            return load.future().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cache counters. Stale hits were served while a background refresh ran;
+     * refreshes recomputed a too shallow or stale entry on the request thread;
+     * coalesced requests joined a load already in flight.
+     */
+    public record Stats(long size, long hits, long staleHits, long misses, long refreshes,
+                        long coalesced, long rejectedRefreshes, long invalidations) {
+
+        public double getHitRate() {
+            long requests = hits + staleHits + misses + refreshes;
+            return requests == 0 ? 0.0 : (double) (hits + staleHits) / requests;
+        }
+    }
+
+    private record Entry(List<ProductRecommendation> recommendations, int depth, boolean stale) {
+
+        List<ProductRecommendation> slice(int count) {
+            return recommendations.subList(0, Math.min(count, recommendations.size()));
+        }
+
+        /**
+         * Always a new instance, so a load that observed an older entry can tell
+         * it was invalidated again while computing
+         */
+        Entry markStale() {
+            return new Entry(recommendations, depth, true);
+        }
+    }
+
+    private record Load(int depth, CompletableFuture<Entry> future) {
+
+        Load(int depth) {
+            this(depth, new CompletableFuture<>());
+        }
+    }
+}
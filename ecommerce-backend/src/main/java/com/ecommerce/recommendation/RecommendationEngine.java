@@ -0,0 +1,381 @@
+package com.ecommerce.recommendation;
+
+import com.ecommerce.model.UserInteraction;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.UserInteractionRepository;
+import com.ecommerce.util.LongDoubleHashMap;
+import com.ecommerce.util.LongIntHashMap;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * In-memory collaborative filtering engine.
+ *
+ * Keeps an immutable {@link UserItemMatrix} snapshot of all user interactions and
+ * the active catalogue, rebuilt periodically, and scores candidate products for a
+ * user without touching the database.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RecommendationEngine {
+
+    private static final int LOAD_BATCH_SIZE = 50_000;
+    private static final double CONTENT_BASED_WEIGHT = 0.5;
+    private static final int PARALLEL_LEAF_SIZE = 512;
+
+    private final UserInteractionRepository interactionRepository;
+    private final ProductRepository productRepository;
+    private final ProductUserIndex productUserIndex;
+    private final MinHashIndex minHashIndex;
+
+    @Value("${ml.recommendation.similarity-threshold:0.3}")
+    private double similarityThreshold;
+
+    @Value("${ml.recommendation.neighbour-search:inverted-index}")
+    private String neighbourSearch;
+
+    @Value("${ml.recommendation.parallel.enabled:false}")
+    private boolean parallelEnabled;
+
+    @Value("${ml.recommendation.parallel.parallelism:0}")
+    private int parallelism;
+
+    @Value("${ml.recommendation.parallel.min-candidates:2048}")
+    private int parallelMinCandidates;
+
+    private volatile UserItemMatrix matrix;
+    private volatile ForkJoinPool scoringPool;
+
+    /**
+     * Get weight for different interaction types
+     */
+    public static double getInteractionWeight(UserInteraction.InteractionType type) {
+        if (type == null) return 1.0;
+        switch (type) {
+            case PURCHASE: return 5.0;
+            case ADD_TO_CART: return 2.0;
+            case VIEW: return 1.0;
+            case RATING: return 3.0;
+            default: return 1.0;
+        }
+    }
+
+    /**
+     * Rebuild the interaction matrix from the database
+     */
+    @Scheduled(fixedDelayString = "${ml.recommendation.engine.refresh-interval-ms:600000}")
+    public void refresh() {
+        long start = System.currentTimeMillis();
+        UserItemMatrix rebuilt = loadMatrix();
+        productUserIndex.addAll(rebuilt);
+        if (useLsh() && !minHashIndex.isSeeded()) {
+            // Signatures are kept current by recordInteraction after the first seed
+            minHashIndex.addAll(rebuilt);
+        }
+        matrix = rebuilt;
+        log.info("Recommendation matrix rebuilt: {} users, {} products, {} cells in {} ms",
+                rebuilt.userCount(), rebuilt.productCount(), rebuilt.nonZeros(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Record a new interaction so it is visible to neighbour search before the next rebuild
+     */
+    public void recordInteraction(long userId, long productId, UserInteraction.InteractionType type) {
+        productUserIndex.add(productId, userId);
+        if (useLsh()) {
+            minHashIndex.add(userId, productId);
+        }
+    }
+
+    /**
+     * Get the current matrix, building it on first use
+     */
+    public UserItemMatrix getMatrix() {
+        UserItemMatrix current = matrix;
+        if (current == null) {
+            synchronized (this) {
+                current = matrix;
+                if (current == null) {
+                    refresh();
+                    current = matrix;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Score products for a user by user-user collaborative filtering plus a
+     * content-based boost for the user's categories.
+     *
+     * @return product id -> score, or null if the user has no interactions
+     */
+    public LongDoubleHashMap score(long userId) {
+        UserItemMatrix m = getMatrix();
+        int user = m.userIndexOf(userId);
+        if (user == LongIntHashMap.NO_VALUE || m.rowLength(user) == 0) {
+            return null;
+        }
+
+        int[] neighbours = findCandidateNeighbours(m, user);
+        long[] preferences = categoryPreferences(m, user);
+        int[] categories = new int[preferences.length];
+        double[] categoryScores = new double[preferences.length];
+        for (int i = 0; i < preferences.length; i++) {
+            categories[i] = (int) (preferences[i] >>> 32);
+            categoryScores[i] = (int) preferences[i] * CONTENT_BASED_WEIGHT;
+        }
+
+        LongDoubleHashMap productScores;
+        if (parallelEnabled && neighbours.length >= parallelMinCandidates) {
+            // Partition neighbours and categories across the pool; each leaf has its own map
+            ForkJoinPool pool = scoringPool();
+            productScores = pool.invoke(new NeighbourScoringTask(m, user, neighbours, 0, neighbours.length));
+            productScores.addAll(pool.invoke(
+                    new CategoryScoringTask(m, user, categories, categoryScores, 0, categories.length)));
+        } else {
+            productScores = new LongDoubleHashMap();
+            scoreNeighbours(m, user, neighbours, 0, neighbours.length, productScores);
+            scoreCategories(m, user, categories, categoryScores, 0, categories.length, productScores);
+        }
+        return productScores;
+    }
+
+    /**
+     * Collaborative filtering: weight co-interacting users' products by similarity
+     */
+    private void scoreNeighbours(UserItemMatrix m, int user, int[] neighbours, int from, int to,
+                                 LongDoubleHashMap productScores) {
+        for (int i = from; i < to; i++) {
+            int other = neighbours[i];
+            double similarity = m.jaccard(user, other);
+            if (similarity > similarityThreshold) {
+                for (int pos = m.rowStart(other); pos < m.rowEnd(other); pos++) {
+                    int product = m.colAt(pos);
+                    if (!m.contains(user, product)) {
+                        productScores.addTo(m.productId(product), similarity * m.weightAt(pos));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Candidate neighbours as ascending matrix row indices: users sharing at least
+     * one product with the target, or users sharing an LSH bucket when
+     * {@code ml.recommendation.neighbour-search} is lsh. Users without a row in the
+     * current snapshot are skipped until the next rebuild.
+     */
+    private int[] findCandidateNeighbours(UserItemMatrix m, int user) {
+        int[] candidates = new int[16];
+        int size = 0;
+        if (useLsh()) {
+            for (long otherUserId : minHashIndex.candidates(m.userId(user))) {
+                int other = m.userIndexOf(otherUserId);
+                if (other == LongIntHashMap.NO_VALUE || other == user) continue;
+                if (size == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, size * 2);
+                }
+                candidates[size++] = other;
+            }
+        } else {
+            for (int pos = m.rowStart(user); pos < m.rowEnd(user); pos++) {
+                for (long otherUserId : productUserIndex.usersOf(m.productId(m.colAt(pos)))) {
+                    int other = m.userIndexOf(otherUserId);
+                    if (other == LongIntHashMap.NO_VALUE || other == user) continue;
+                    if (size == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, size * 2);
+                    }
+                    candidates[size++] = other;
+                }
+            }
+        }
+        Arrays.sort(candidates, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || candidates[distinct - 1] != candidates[i]) {
+                candidates[distinct++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, distinct);
+    }
+
+    private boolean useLsh() {
+        return "lsh".equalsIgnoreCase(neighbourSearch);
+    }
+
+    /**
+     * Categories the user interacted with, ascending, each packed as
+     * (dense category index << 32 | interaction count)
+     */
+    private long[] categoryPreferences(UserItemMatrix m, int user) {
+        long[] entries = new long[m.rowLength(user)];
+        int size = 0;
+        for (int pos = m.rowStart(user); pos < m.rowEnd(user); pos++) {
+            long categoryId = m.categoryId(m.colAt(pos));
+            int category = categoryId != 0 ? m.categoryIndexOf(categoryId) : LongIntHashMap.NO_VALUE;
+            if (category != LongIntHashMap.NO_VALUE) {
+                entries[size++] = ((long) category << 32) | m.countAt(pos);
+            }
+        }
+        Arrays.sort(entries, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct > 0 && (entries[distinct - 1] >>> 32) == (entries[i] >>> 32)) {
+                entries[distinct - 1] += (int) entries[i];
+            } else {
+                entries[distinct++] = entries[i];
+            }
+        }
+        return Arrays.copyOf(entries, distinct);
+    }
+
+    /**
+     * Boost active products in the categories the user interacted with,
+     * proportionally to the number of interactions in each category
+     */
+    private void scoreCategories(UserItemMatrix m, int user, int[] categories, double[] categoryScores,
+                                 int from, int to, LongDoubleHashMap productScores) {
+        for (int i = from; i < to; i++) {
+            int category = categories[i];
+            for (int pos = m.categoryStart(category); pos < m.categoryEnd(category); pos++) {
+                int product = m.categoryProductAt(pos);
+                if (!m.contains(user, product)) {
+                    productScores.addTo(m.productId(product), categoryScores[i]);
+                }
+            }
+        }
+    }
+
+    private ForkJoinPool scoringPool() {
+        ForkJoinPool pool = scoringPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = scoringPool;
+                if (pool == null) {
+                    int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+                    pool = new ForkJoinPool(threads);
+                    scoringPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scoringPool != null) {
+            scoringPool.shutdown();
+        }
+    }
+
+    /**
+     * Splits a range of neighbours in halves down to a fixed leaf size. The split
+     * tree only depends on the input, and partial maps are always merged right
+     * into left, so results are deterministic regardless of scheduling.
+     */
+    private final class NeighbourScoringTask extends RecursiveTask<LongDoubleHashMap> {
+
+        private final UserItemMatrix m;
+        private final int user;
+        private final int[] neighbours;
+        private final int from;
+        private final int to;
+
+        NeighbourScoringTask(UserItemMatrix m, int user, int[] neighbours, int from, int to) {
+            this.m = m;
+            this.user = user;
+            this.neighbours = neighbours;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected LongDoubleHashMap compute() {
+            if (to - from <= PARALLEL_LEAF_SIZE) {
+                LongDoubleHashMap partial = new LongDoubleHashMap();
+                scoreNeighbours(m, user, neighbours, from, to, partial);
+                return partial;
+            }
+            int mid = (from + to) >>> 1;
+            NeighbourScoringTask right = new NeighbourScoringTask(m, user, neighbours, mid, to);
+            right.fork();
+            LongDoubleHashMap left = new NeighbourScoringTask(m, user, neighbours, from, mid).compute();
+            left.addAll(right.join());
+            return left;
+        }
+    }
+
+    private final class CategoryScoringTask extends RecursiveTask<LongDoubleHashMap> {
+
+        private final UserItemMatrix m;
+        private final int user;
+        private final int[] categories;
+        private final double[] categoryScores;
+        private final int from;
+        private final int to;
+
+        CategoryScoringTask(UserItemMatrix m, int user, int[] categories, double[] categoryScores,
+                            int from, int to) {
+            this.m = m;
+            this.user = user;
+            this.categories = categories;
+            this.categoryScores = categoryScores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected LongDoubleHashMap compute() {
+            if (to - from <= 1) {
+                LongDoubleHashMap partial = new LongDoubleHashMap();
+                scoreCategories(m, user, categories, categoryScores, from, to, partial);
+                return partial;
+            }
+            int mid = (from + to) >>> 1;
+            CategoryScoringTask right = new CategoryScoringTask(m, user, categories, categoryScores, mid, to);
+            right.fork();
+            LongDoubleHashMap left = new CategoryScoringTask(m, user, categories, categoryScores, from, mid).compute();
+            left.addAll(right.join());
+            return left;
+        }
+    }
+
+    private UserItemMatrix loadMatrix() {
+        UserItemMatrix.Builder builder = new UserItemMatrix.Builder(RecommendationEngine::getInteractionWeight);
+
+        long afterId = 0L;
+        List<Object[]> rows;
+        do {
+            rows = productRepository.findCatalogueRowsAfter(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                builder.addProduct(afterId, (Long) row[1], Boolean.TRUE.equals(row[2]));
+            }
+        } while (rows.size() == LOAD_BATCH_SIZE);
+
+        afterId = 0L;
+        do {
+            rows = interactionRepository.findInteractionRowsAfter(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                builder.addInteraction(afterId, (Long) row[1], (Long) row[2],
+                        (UserInteraction.InteractionType) row[3]);
+            }
+        } while (rows.size() == LOAD_BATCH_SIZE);
+
+        return builder.build();
+    }
+}
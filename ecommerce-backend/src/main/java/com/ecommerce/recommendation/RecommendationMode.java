@@ -0,0 +1,29 @@
+package com.ecommerce.recommendation;
+
+/**
+ * Scoring strategy selected by {@code ml.recommendation.algorithm}
+ */
+public enum RecommendationMode {
+
+    /** User-user collaborative filtering (collaborative-filtering) */
+    COLLABORATIVE,
+
+    /** Offline item-item neighbour lists (item-based) */
+    ITEM_BASED;
+
+    public static RecommendationMode fromProperty(String algorithm) {
+        if (algorithm == null) {
+            return COLLABORATIVE;
+        }
+        switch (algorithm.trim().toLowerCase()) {
+            case "item-based":
+            case "item_based":
+                return ITEM_BASED;
+            case "collaborative-filtering":
+            case "collaborative":
+                return COLLABORATIVE;
+            default:
+                throw new IllegalArgumentException("Unknown recommendation algorithm: " + algorithm);
+        }
+    }
+}
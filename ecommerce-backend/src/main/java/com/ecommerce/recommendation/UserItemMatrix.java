@@ -0,0 +1,368 @@
+package com.ecommerce.recommendation;
+
+import com.ecommerce.model.UserInteraction;
+import com.ecommerce.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Immutable sparse user x product interaction matrix.
+ *
+ * Users, products and categories are remapped to dense int indices. Interactions
+ * are stored twice: row-major (CSR, user -> products) for similarity and scoring,
+ * and column-major (CSC, product -> users) for item-side lookups. Each cell holds
+ * the summed interaction weight and the raw interaction count of a user/product pair.
+ */
+public final class UserItemMatrix {
+
+    private final long[] userIds;
+    private final LongIntHashMap userIndex;
+    private final long[] productIds;
+    private final LongIntHashMap productIndex;
+    private final long[] productCategoryIds;
+    private final boolean[] productActive;
+
+    // CSR: user -> sorted product indices
+    private final int[] rowPtr;
+    private final int[] rowCols;
+    private final float[] rowWeights;
+    private final int[] rowCounts;
+
+    // CSC: product -> sorted user indices
+    private final int[] colPtr;
+    private final int[] colRows;
+    private final float[] colWeights;
+
+    // category -> active products
+    private final LongIntHashMap categoryIndex;
+    private final int[] categoryPtr;
+    private final int[] categoryProducts;
+
+    private final long maxInteractionId;
+
+    private UserItemMatrix(Builder b, int[] rowPtr, int[] rowCols, float[] rowWeights, int[] rowCounts) {
+        int users = b.userCount;
+        int products = b.productCount;
+        this.userIds = Arrays.copyOf(b.userIds, users);
+        this.userIndex = b.userIndex;
+        this.productIds = Arrays.copyOf(b.productIds, products);
+        this.productIndex = b.productIndex;
+        this.productCategoryIds = Arrays.copyOf(b.productCategoryIds, products);
+        this.productActive = Arrays.copyOf(b.productActive, products);
+        this.rowPtr = rowPtr;
+        this.rowCols = rowCols;
+        this.rowWeights = rowWeights;
+        this.rowCounts = rowCounts;
+        this.maxInteractionId = b.maxInteractionId;
+
+        // Transpose CSR into CSC with a counting sort on the column index
+        int nnz = rowCols.length;
+        colPtr = new int[products + 1];
+        for (int i = 0; i < nnz; i++) {
+            colPtr[rowCols[i] + 1]++;
+        }
+        for (int p = 0; p < products; p++) {
+            colPtr[p + 1] += colPtr[p];
+        }
+        colRows = new int[nnz];
+        colWeights = new float[nnz];
+        int[] next = Arrays.copyOf(colPtr, products);
+        for (int u = 0; u < users; u++) {
+            for (int i = rowPtr[u]; i < rowPtr[u + 1]; i++) {
+                int pos = next[rowCols[i]]++;
+                colRows[pos] = u;
+                colWeights[pos] = rowWeights[i];
+            }
+        }
+
+        // Group active products by category
+        categoryIndex = new LongIntHashMap();
+        int[] productCategory = new int[products];
+        int categories = 0;
+        for (int p = 0; p < products; p++) {
+            if (productActive[p] && productCategoryIds[p] != 0) {
+                int c = categoryIndex.putIfAbsent(productCategoryIds[p], categories);
+                if (c == categories) {
+                    categories++;
+                }
+                productCategory[p] = c;
+            } else {
+                productCategory[p] = -1;
+            }
+        }
+        categoryPtr = new int[categories + 1];
+        for (int p = 0; p < products; p++) {
+            if (productCategory[p] >= 0) {
+                categoryPtr[productCategory[p] + 1]++;
+            }
+        }
+        for (int c = 0; c < categories; c++) {
+            categoryPtr[c + 1] += categoryPtr[c];
+        }
+        categoryProducts = new int[categoryPtr[categories]];
+        int[] nextInCategory = Arrays.copyOf(categoryPtr, categories);
+        for (int p = 0; p < products; p++) {
+            if (productCategory[p] >= 0) {
+                categoryProducts[nextInCategory[productCategory[p]]++] = p;
+            }
+        }
+    }
+
+    public int userCount() {
+        return userIds.length;
+    }
+
+    public int productCount() {
+        return productIds.length;
+    }
+
+    public int nonZeros() {
+        return rowCols.length;
+    }
+
+    /**
+     * Highest interaction id folded into this matrix
+     */
+    public long maxInteractionId() {
+        return maxInteractionId;
+    }
+
+    /**
+     * Dense index of a user, or -1 if the user has no row
+     */
+    public int userIndexOf(long userId) {
+        return userIndex.get(userId);
+    }
+
+    public int productIndexOf(long productId) {
+        return productIndex.get(productId);
+    }
+
+    public long userId(int user) {
+        return userIds[user];
+    }
+
+    public long productId(int product) {
+        return productIds[product];
+    }
+
+    public long categoryId(int product) {
+        return productCategoryIds[product];
+    }
+
+    public boolean isActive(int product) {
+        return productActive[product];
+    }
+
+    public int rowStart(int user) {
+        return rowPtr[user];
+    }
+
+    public int rowEnd(int user) {
+        return rowPtr[user + 1];
+    }
+
+    public int rowLength(int user) {
+        return rowPtr[user + 1] - rowPtr[user];
+    }
+
+    public int colAt(int pos) {
+        return rowCols[pos];
+    }
+
+    public float weightAt(int pos) {
+        return rowWeights[pos];
+    }
+
+    public int countAt(int pos) {
+        return rowCounts[pos];
+    }
+
+    public int colStart(int product) {
+        return colPtr[product];
+    }
+
+    public int colEnd(int product) {
+        return colPtr[product + 1];
+    }
+
+    public int rowAt(int pos) {
+        return colRows[pos];
+    }
+
+    public float colWeightAt(int pos) {
+        return colWeights[pos];
+    }
+
+    /**
+     * Whether a user has interacted with a product (binary search in the sorted row)
+     */
+    public boolean contains(int user, int product) {
+        return Arrays.binarySearch(rowCols, rowPtr[user], rowPtr[user + 1], product) >= 0;
+    }
+
+    /**
+     * Jaccard similarity of the product sets of two users, by merging sorted rows
+     */
+    public double jaccard(int a, int b) {
+        int i = rowPtr[a], endA = rowPtr[a + 1];
+        int j = rowPtr[b], endB = rowPtr[b + 1];
+        int lengthA = endA - i, lengthB = endB - j;
+        if (lengthA + lengthB == 0) return 0.0;
+        int intersection = 0;
+        while (i < endA && j < endB) {
+            int ca = rowCols[i], cb = rowCols[j];
+            if (ca == cb) {
+                intersection++;
+                i++;
+                j++;
+            } else if (ca < cb) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return (double) intersection / (lengthA + lengthB - intersection);
+    }
+
+    /**
+     * Dense index of a category, or -1 if it has no active products
+     */
+    public int categoryIndexOf(long categoryId) {
+        return categoryIndex.get(categoryId);
+    }
+
+    public int categoryStart(int category) {
+        return categoryPtr[category];
+    }
+
+    public int categoryEnd(int category) {
+        return categoryPtr[category + 1];
+    }
+
+    public int categoryProductAt(int pos) {
+        return categoryProducts[pos];
+    }
+
+    /**
+     * Accumulates catalogue and interaction rows and compacts them into a matrix
+     */
+    public static final class Builder {
+
+        private static final UserInteraction.InteractionType[] TYPES = UserInteraction.InteractionType.values();
+
+        private final double[] typeWeights;
+
+        private final LongIntHashMap userIndex = new LongIntHashMap(1 << 12);
+        private long[] userIds = new long[1 << 12];
+        private int userCount;
+
+        private final LongIntHashMap productIndex = new LongIntHashMap(1 << 12);
+        private long[] productIds = new long[1 << 12];
+        private long[] productCategoryIds = new long[1 << 12];
+        private boolean[] productActive = new boolean[1 << 12];
+        private int productCount;
+
+        // entry = (product index << 8) | interaction type ordinal, grouped by user later
+        private int[] entryUsers = new int[1 << 14];
+        private long[] entries = new long[1 << 14];
+        private int entryCount;
+
+        private long maxInteractionId;
+
+        public Builder(ToDoubleFunction<UserInteraction.InteractionType> interactionWeight) {
+            typeWeights = new double[TYPES.length];
+            for (UserInteraction.InteractionType type : TYPES) {
+                typeWeights[type.ordinal()] = interactionWeight.applyAsDouble(type);
+            }
+        }
+
+        public Builder addProduct(long productId, Long categoryId, boolean active) {
+            int p = productIndexFor(productId);
+            productCategoryIds[p] = categoryId != null ? categoryId : 0L;
+            productActive[p] = active;
+            return this;
+        }
+
+        public Builder addInteraction(long interactionId, long userId, long productId,
+                                      UserInteraction.InteractionType type) {
+            int u = userIndex.putIfAbsent(userId, userCount);
+            if (u == userCount) {
+                if (userCount == userIds.length) {
+                    userIds = Arrays.copyOf(userIds, userCount * 2);
+                }
+                userIds[userCount++] = userId;
+            }
+            int p = productIndexFor(productId);
+            if (entryCount == entries.length) {
+                entries = Arrays.copyOf(entries, entryCount * 2);
+                entryUsers = Arrays.copyOf(entryUsers, entryCount * 2);
+            }
+            entryUsers[entryCount] = u;
+            entries[entryCount++] = ((long) p << 8) | (type != null ? type.ordinal() : 0);
+            maxInteractionId = Math.max(maxInteractionId, interactionId);
+            return this;
+        }
+
+        private int productIndexFor(long productId) {
+            int p = productIndex.putIfAbsent(productId, productCount);
+            if (p == productCount) {
+                if (productCount == productIds.length) {
+                    int capacity = productCount * 2;
+                    productIds = Arrays.copyOf(productIds, capacity);
+                    productCategoryIds = Arrays.copyOf(productCategoryIds, capacity);
+                    productActive = Arrays.copyOf(productActive, capacity);
+                }
+                productIds[productCount++] = productId;
+            }
+            return p;
+        }
+
+        public UserItemMatrix build() {
+            // Counting sort of the entries by user
+            int[] ptr = new int[userCount + 1];
+            for (int i = 0; i < entryCount; i++) {
+                ptr[entryUsers[i] + 1]++;
+            }
+            for (int u = 0; u < userCount; u++) {
+                ptr[u + 1] += ptr[u];
+            }
+            long[] sorted = new long[entryCount];
+            int[] next = Arrays.copyOf(ptr, userCount);
+            for (int i = 0; i < entryCount; i++) {
+                sorted[next[entryUsers[i]]++] = entries[i];
+            }
+            entries = null;
+            entryUsers = null;
+
+            // Sort each row by product and collapse duplicate pairs into one cell
+            int[] rowPtr = new int[userCount + 1];
+            int[] cols = new int[entryCount];
+            float[] weights = new float[entryCount];
+            int[] counts = new int[entryCount];
+            int nnz = 0;
+            for (int u = 0; u < userCount; u++) {
+                Arrays.sort(sorted, ptr[u], ptr[u + 1]);
+                int last = -1;
+                for (int i = ptr[u]; i < ptr[u + 1]; i++) {
+                    int p = (int) (sorted[i] >>> 8);
+                    double weight = typeWeights[(int) (sorted[i] & 0xFF)];
+                    if (p != last) {
+                        cols[nnz] = p;
+                        weights[nnz] = (float) weight;
+                        counts[nnz] = 1;
+                        nnz++;
+                        last = p;
+                    } else {
+                        weights[nnz - 1] += (float) weight;
+                        counts[nnz - 1]++;
+                    }
+                }
+                rowPtr[u + 1] = nnz;
+            }
+            return new UserItemMatrix(this, rowPtr,
+                    Arrays.copyOf(cols, nnz), Arrays.copyOf(weights, nnz), Arrays.copyOf(counts, nnz));
+        }
+    }
+}
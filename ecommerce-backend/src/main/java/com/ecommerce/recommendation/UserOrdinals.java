@@ -0,0 +1,43 @@
+package com.ecommerce.recommendation;
+
+import com.ecommerce.util.LongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Append-only mapping of user ids to dense int ordinals, so posting lists and
+ * LSH buckets can hold ints whatever the range of users.id. Ordinals are
+ * assigned on first sight and never reused.
+ *
+ * Assigning takes a lock; {@link #userId} does not, since a caller only holds
+ * an ordinal that was published to it after the assignment.
+ */
+final class UserOrdinals {
+
+    private final LongIntHashMap ordinals = new LongIntHashMap(1 << 10);
+    private volatile long[] userIds = new long[1 << 10];
+    private int size;
+
+    /**
+     * The ordinal of a user id, assigning the next one if the user is new
+     */
+    synchronized int ordinalOf(long userId) {
+        int ordinal = ordinals.get(userId);
+        if (ordinal != LongIntHashMap.NO_VALUE) {
+            return ordinal;
+        }
+        ordinal = size++;
+        long[] ids = userIds;
+        if (ordinal == ids.length) {
+            ids = Arrays.copyOf(ids, ordinal * 2);
+        }
+        ids[ordinal] = userId;
+        userIds = ids;
+        ordinals.put(userId, ordinal);
+        return ordinal;
+    }
+
+    long userId(int ordinal) {
+        return userIds[ordinal];
+    }
+}
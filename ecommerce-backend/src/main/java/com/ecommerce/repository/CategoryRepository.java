@@ -2,6 +2,7 @@ package com.ecommerce.repository;
 
 import com.ecommerce.model.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,5 +14,11 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     Optional<Category> findByName(String name);
     
     List<Category> findByParentCategoryIsNull();
+    
+    /**
+     * (id, name, description, imageUrl, parentId) of every category
+     */
+    @Query("SELECT c.id, c.name, c.description, c.imageUrl, pc.id FROM Category c LEFT JOIN c.parentCategory pc")
+    List<Object[]> findTreeRows();
 }
 
@@ -2,6 +2,8 @@ package com.ecommerce.repository;
 
 import com.ecommerce.model.InventoryTransaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,5 +12,11 @@ import java.util.List;
 public interface InventoryTransactionRepository extends JpaRepository<InventoryTransaction, Long> {
     
     List<InventoryTransaction> findByProductIdOrderByCreatedAtDesc(Long productId);
+    
+    @Query("SELECT COALESCE(MAX(t.id), 0) FROM InventoryTransaction t")
+    Long findMaxId();
+    
+    @Query("SELECT DISTINCT t.product.id FROM InventoryTransaction t WHERE t.id > :afterId AND t.id <= :upToId")
+    List<Long> findProductIdsChangedBetween(@Param("afterId") Long afterId, @Param("upToId") Long upToId);
 }
 
@@ -1,16 +1,26 @@
 package com.ecommerce.repository;
 
 import com.ecommerce.model.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     
+    /**
+     * Order history read path: orders with their items, products and categories in one query
+     */
+    @EntityGraph(attributePaths = {"orderItems", "orderItems.product", "orderItems.product.category"})
     List<Order> findByUserIdOrderByCreatedAtDesc(Long userId);
     
+    @EntityGraph(attributePaths = {"orderItems", "orderItems.product", "orderItems.product.category"})
+    Optional<Order> findWithItemsById(Long id);
+    
+    @EntityGraph(attributePaths = {"orderItems", "orderItems.product", "orderItems.product.category"})
     Optional<Order> findByOrderNumber(String orderNumber);
 }
 
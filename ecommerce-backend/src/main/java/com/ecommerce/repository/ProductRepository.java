@@ -1,26 +1,130 @@
 package com.ecommerce.repository;
 
 import com.ecommerce.model.Product;
+import com.ecommerce.model.ProductSnapshot;
+import com.ecommerce.model.ProductSummary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
     
-    Page<Product> findByActiveTrue(Pageable pageable);
+    /**
+     * Listing projection; the category id comes from the foreign key column, so no join is needed
+     */
+    String SELECT_SUMMARY = "SELECT new com.ecommerce.model.ProductSummary(p.id, p.name, p.description, " +
+                            "p.price, p.discountPrice, p.imageUrl, p.stockQuantity, p.category.id, " +
+                            "p.purchaseCount, p.createdAt) ";
     
-    List<Product> findByCategoryIdAndActiveTrue(Long categoryId);
+    @Query(value = SELECT_SUMMARY + "FROM Product p WHERE p.active = true",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.active = true")
+    Page<ProductSummary> findSummariesByActiveTrue(Pageable pageable);
     
-    @Query("SELECT p FROM Product p WHERE p.active = true ORDER BY p.purchaseCount DESC, p.viewCount DESC")
-    List<Product> findTopByOrderByPurchaseCountDescViewCountDesc(int limit);
+    @Query(SELECT_SUMMARY + "FROM Product p WHERE p.category.id = :categoryId AND p.active = true")
+    List<ProductSummary> findSummariesByCategoryId(@Param("categoryId") Long categoryId);
     
-    List<Product> findByNameContainingIgnoreCaseAndActiveTrue(String name);
+    @Query(value = SELECT_SUMMARY + "FROM Product p WHERE p.category.id IN :categoryIds AND p.active = true",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.category.id IN :categoryIds AND p.active = true")
+    Page<ProductSummary> findSummariesByCategoryIdIn(@Param("categoryIds") Collection<Long> categoryIds,
+                                                     Pageable pageable);
+    
+    @Query(SELECT_SUMMARY + "FROM Product p WHERE p.id IN :ids AND p.active = true")
+    List<ProductSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Keyset-paged listings, served by the (active, created_at, id) and
+     * (active, purchase_count, id) indexes; a Slice skips the count query.
+     * NULL sorts lowest, so rows without a sort key come last, by descending id:
+     * every seek includes them, and the findNull* queries page through them
+     * once the cursor has reached one.
+     */
+    @Query(SELECT_SUMMARY + "FROM Product p WHERE p.active = true ORDER BY p.createdAt DESC, p.id DESC")
+    Slice<ProductSummary> findNewestSummaries(Pageable pageable);
+    
+    @Query(SELECT_SUMMARY + "FROM Product p WHERE p.active = true " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id) OR p.createdAt IS NULL) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    Slice<ProductSummary> findNewestSummariesBefore(@Param("createdAt") LocalDateTime createdAt,
+                                                    @Param("id") Long id, Pageable pageable);
+    
+    @Query(SELECT_SUMMARY + "FROM Product p WHERE p.active = true AND p.createdAt IS NULL AND p.id < :id " +
+           "ORDER BY p.id DESC")
+    Slice<ProductSummary> findNullCreatedSummariesBefore(@Param("id") Long id, Pageable pageable);
+    
+    @Query(SELECT_SUMMARY + "FROM Product p WHERE p.active = true ORDER BY p.purchaseCount DESC, p.id DESC")
+    Slice<ProductSummary> findPopularSummaries(Pageable pageable);
+    
+    @Query(SELECT_SUMMARY + "FROM Product p WHERE p.active = true " +
+           "AND (p.purchaseCount < :purchaseCount OR (p.purchaseCount = :purchaseCount AND p.id < :id) " +
+           "OR p.purchaseCount IS NULL) " +
+           "ORDER BY p.purchaseCount DESC, p.id DESC")
+    Slice<ProductSummary> findPopularSummariesAfter(@Param("purchaseCount") Long purchaseCount,
+                                                    @Param("id") Long id, Pageable pageable);
+    
+    @Query(SELECT_SUMMARY + "FROM Product p WHERE p.active = true AND p.purchaseCount IS NULL AND p.id < :id " +
+           "ORDER BY p.id DESC")
+    Slice<ProductSummary> findNullPurchaseCountSummariesAfter(@Param("id") Long id, Pageable pageable);
     
     List<Product> findByCategoryId(Long categoryId);
+    
+    /**
+     * Keyset-paged scan of (id, categoryId, active) rows for bulk loading
+     */
+    @Query("SELECT p.id, c.id, p.active FROM Product p LEFT JOIN p.category c " +
+           "WHERE p.id > :afterId ORDER BY p.id")
+    List<Object[]> findCatalogueRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Keyset-paged scan of (id, categoryId, purchaseCount, viewCount) rows of active products
+     */
+    @Query("SELECT p.id, c.id, p.purchaseCount, p.viewCount FROM Product p LEFT JOIN p.category c " +
+           "WHERE p.active = true AND p.id > :afterId ORDER BY p.id")
+    List<Object[]> findPopularityRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Keyset-paged scan of (id, name, description) rows of active products for the search index
+     */
+    @Query("SELECT p.id, p.name, p.description FROM Product p " +
+           "WHERE p.active = true AND p.id > :afterId ORDER BY p.id")
+    List<Object[]> findSearchRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Keyset-paged scan of (id, categoryId, price, discountPrice, stockQuantity) rows of active products
+     */
+    @Query("SELECT p.id, c.id, p.price, p.discountPrice, p.stockQuantity FROM Product p LEFT JOIN p.category c " +
+           "WHERE p.active = true AND p.id > :afterId ORDER BY p.id")
+    List<Object[]> findFacetRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT new com.ecommerce.model.ProductSnapshot(p.id, p.name, p.price, p.discountPrice, " +
+           "p.category.id, p.active, p.stockQuantity) FROM Product p WHERE p.id IN :ids")
+    List<ProductSnapshot> findSnapshotsByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT p.stockQuantity FROM Product p WHERE p.id = :id")
+    Integer findStockQuantityById(@Param("id") Long id);
+    
+    /**
+     * Take stock only if enough is left; returns 0 when the product is missing or short
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity - :quantity " +
+           "WHERE p.id = :id AND p.stockQuantity >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+    
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity + :quantity WHERE p.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+    
+    @Query("SELECT p.id, p.stockQuantity FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findStockRowsByIdIn(@Param("ids") Collection<Long> ids);
 }
 
@@ -1,7 +1,10 @@
 package com.ecommerce.repository;
 
 import com.ecommerce.model.UserInteraction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -14,5 +17,15 @@ public interface UserInteractionRepository extends JpaRepository<UserInteraction
     List<UserInteraction> findByProductId(Long productId);
     
     long countByProductIdAndType(Long productId, UserInteraction.InteractionType type);
+    
+    /**
+     * Keyset-paged scan of (id, userId, productId, type) rows for bulk loading
+     */
+    @Query("SELECT i.id, i.user.id, i.product.id, i.type FROM UserInteraction i " +
+           "WHERE i.id > :afterId ORDER BY i.id")
+    List<Object[]> findInteractionRowsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT DISTINCT i.product.id FROM UserInteraction i WHERE i.id > :afterId AND i.id <= :upToId")
+    List<Long> findProductIdsTouchedBetween(@Param("afterId") Long afterId, @Param("upToId") Long upToId);
 }
 
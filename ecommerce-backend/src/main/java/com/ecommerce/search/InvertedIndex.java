@@ -0,0 +1,203 @@
+package com.ecommerce.search;
+
+import com.ecommerce.util.LongDoubleHashMap;
+import com.ecommerce.util.LongIntHashMap;
+import com.ecommerce.util.TopKSelector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over product names and descriptions with BM25 ranking.
+ *
+ * Each indexed product gets a dense document number; re-indexing a product
+ * retires its old number and appends a new one, so posting lists only ever grow
+ * at the end. Name terms count {@code NAME_WEIGHT} times, a cheap stand-in for
+ * per-field BM25. Queries match every term; the last term can match as a prefix
+ * for type-ahead. Not thread-safe.
+ */
+class InvertedIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_WEIGHT = 3;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    // Sorted, so prefix queries are a range scan
+    private final TreeMap<String, Integer> termIds = new TreeMap<>();
+    private final List<PostingList> postings = new ArrayList<>();
+
+    private long[] productIds = new long[1 << 10];
+    private int[] lengths = new int[productIds.length];
+    private int[][] documentTerms = new int[productIds.length][];
+    private final BitSet live = new BitSet();
+    private final LongIntHashMap documents = new LongIntHashMap();
+    private int documentCount;
+    private int liveDocuments;
+    private long totalLength;
+
+    /**
+     * Index a product, replacing any earlier version of it
+     */
+    void add(long productId, String name, String description) {
+        remove(productId);
+        Map<String, int[]> frequencies = new HashMap<>();
+        int length = 0;
+        for (String token : Tokenizer.tokenize(name)) {
+            frequencies.computeIfAbsent(token, t -> new int[1])[0] += NAME_WEIGHT;
+            length += NAME_WEIGHT;
+        }
+        for (String token : Tokenizer.tokenize(description)) {
+            frequencies.computeIfAbsent(token, t -> new int[1])[0]++;
+            length++;
+        }
+        if (frequencies.isEmpty()) {
+            return;
+        }
+
+        int document = documentCount++;
+        if (document == productIds.length) {
+            productIds = Arrays.copyOf(productIds, document * 2);
+            lengths = Arrays.copyOf(lengths, document * 2);
+            documentTerms = Arrays.copyOf(documentTerms, document * 2);
+        }
+        int[] terms = new int[frequencies.size()];
+        int i = 0;
+        for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+            int term = termIds.computeIfAbsent(entry.getKey(), t -> {
+                postings.add(new PostingList());
+                return postings.size() - 1;
+            });
+            postings.get(term).add(document, entry.getValue()[0]);
+            terms[i++] = term;
+        }
+        productIds[document] = productId;
+        lengths[document] = length;
+        documentTerms[document] = terms;
+        live.set(document);
+        documents.put(productId, document);
+        liveDocuments++;
+        totalLength += length;
+    }
+
+    void remove(long productId) {
+        int document = documents.get(productId);
+        if (document == LongIntHashMap.NO_VALUE) {
+            return;
+        }
+        for (int term : documentTerms[document]) {
+            postings.get(term).documentFrequency--;
+        }
+        live.clear(document);
+        documents.put(productId, LongIntHashMap.NO_VALUE);
+        documentTerms[document] = null;
+        liveDocuments--;
+        totalLength -= lengths[document];
+    }
+
+    /**
+     * Product ids of the best matches, best first
+     *
+     * @param prefix whether the last query term may match as a prefix
+     */
+    long[] search(String query, int limit, boolean prefix) {
+        List<String> tokens = Tokenizer.tokenize(query);
+        if (tokens.isEmpty() || liveDocuments == 0 || limit <= 0) {
+            return new long[0];
+        }
+        // One group of term ids per query token; a document must match each group
+        List<int[]> groups = new ArrayList<>(tokens.size());
+        for (int t = 0; t < tokens.size(); t++) {
+            int[] group = prefix && t == tokens.size() - 1
+                    ? expandPrefix(tokens.get(t))
+                    : exactTerm(tokens.get(t));
+            if (group.length == 0) {
+                return new long[0];
+            }
+            groups.add(group);
+        }
+        // Rarest group first keeps the candidate set small
+        groups.sort(Comparator.comparingLong(this::frequencyOf));
+
+        double averageLength = (double) totalLength / liveDocuments;
+        LongDoubleHashMap scores = null;
+        for (int[] group : groups) {
+            LongDoubleHashMap candidates = scores;
+            LongDoubleHashMap next = new LongDoubleHashMap(candidates == null ? 256 : candidates.size());
+            for (int term : group) {
+                PostingList list = postings.get(term);
+                double idf = Math.log(1 + (liveDocuments - list.documentFrequency + 0.5)
+                        / (list.documentFrequency + 0.5));
+                list.forEach((document, frequency) -> {
+                    if (!live.get(document) || (candidates != null && !candidates.containsKey(document))) {
+                        return;
+                    }
+                    double norm = K1 * (1 - B + B * lengths[document] / averageLength);
+                    next.addTo(document, idf * frequency * (K1 + 1) / (frequency + norm));
+                });
+            }
+            if (candidates != null) {
+                // Only existing keys are updated, so the map is not resized while iterating
+                next.forEach((document, score) -> next.addTo(document, candidates.get(document, 0.0)));
+            }
+            if (next.isEmpty()) {
+                return new long[0];
+            }
+            scores = next;
+        }
+
+        TopKSelector top = new TopKSelector(Math.min(limit, scores.size()));
+        scores.forEach((document, score) -> top.offer(productIds[(int) document], score));
+        return top.sort().ids();
+    }
+
+    Stats stats() {
+        long postingBytes = 0;
+        for (PostingList list : postings) {
+            postingBytes += list.sizeInBytes();
+        }
+        return new Stats(liveDocuments, documentCount - liveDocuments, termIds.size(), postingBytes);
+    }
+
+    record Stats(int documents, int retiredDocuments, int terms, long postingBytes) {
+    }
+
+    private int[] exactTerm(String token) {
+        Integer term = termIds.get(token);
+        return term != null && postings.get(term).documentFrequency > 0 ? new int[]{term} : new int[0];
+    }
+
+    /**
+     * Terms starting with the token, keeping the most frequent ones
+     */
+    private int[] expandPrefix(String token) {
+        NavigableMap<String, Integer> range = termIds.subMap(token, true, token + Character.MAX_VALUE, false);
+        int[] terms = range.values().stream()
+                .mapToInt(Integer::intValue)
+                .filter(term -> postings.get(term).documentFrequency > 0)
+                .toArray();
+        if (terms.length <= MAX_PREFIX_EXPANSIONS) {
+            return terms;
+        }
+        return Arrays.stream(terms).boxed()
+                .sorted(Comparator.comparingInt((Integer term) -> postings.get(term).documentFrequency).reversed())
+                .limit(MAX_PREFIX_EXPANSIONS)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private long frequencyOf(int[] group) {
+        long frequency = 0;
+        for (int term : group) {
+            frequency += postings.get(term).documentFrequency;
+        }
+        return frequency;
+    }
+}
@@ -0,0 +1,69 @@
+package com.ecommerce.search;
+
+/**
+ * Append-only posting list of (document, term frequency) pairs. Documents are
+ * added in increasing order and stored as varint-encoded gaps, so a posting
+ * usually takes two bytes. Removed documents stay in the list and are skipped
+ * by the caller; {@code documentFrequency} counts only live ones.
+ */
+final class PostingList {
+
+    private byte[] data = new byte[8];
+    private int length;
+    private int lastDocument = -1;
+    int documentFrequency;
+
+    void add(int document, int frequency) {
+        if (document <= lastDocument) {
+            throw new IllegalArgumentException("Documents must be added in increasing order");
+        }
+        if (length + 10 > data.length) {
+            byte[] grown = new byte[Math.max(data.length * 2, length + 10)];
+            System.arraycopy(data, 0, grown, 0, length);
+            data = grown;
+        }
+        length = writeVarint(data, length, document - lastDocument);
+        length = writeVarint(data, length, frequency);
+        lastDocument = document;
+        documentFrequency++;
+    }
+
+    void forEach(PostingConsumer consumer) {
+        int document = -1;
+        int position = 0;
+        while (position < length) {
+            int gap = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[position++];
+                gap |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            int frequency = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[position++];
+                frequency |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            document += gap;
+            consumer.accept(document, frequency);
+        }
+    }
+
+    int sizeInBytes() {
+        return data.length;
+    }
+
+    private static int writeVarint(byte[] target, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+
+    @FunctionalInterface
+    interface PostingConsumer {
+        void accept(int document, int frequency);
+    }
+}
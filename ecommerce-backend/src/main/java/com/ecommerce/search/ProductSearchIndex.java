@@ -0,0 +1,186 @@
+package com.ecommerce.search;
+
+import com.ecommerce.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-process full-text index of active products, replacing {@code LIKE '%q%'}
+ * scans for product search.
+ *
+ * Built from the products table on first use and kept current by the product
+ * service after each committed change. Searches share a read lock; changes take
+ * the write lock briefly. Re-indexed products leave retired documents behind,
+ * and once they pass {@code max-retired-ratio} the index is rebuilt. Changes made
+ * while a rebuild reads the table are replayed onto the new index before it is
+ * swapped in.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    private final ProductRepository productRepository;
+
+    @Value("${search.index.max-retired-ratio:0.25}")
+    private double maxRetiredRatio;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object();
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder queryNanos = new LongAdder();
+
+    // Both guarded by lock; replay is non-null while a rebuild is reading the table
+    private InvertedIndex index;
+    private List<Consumer<InvertedIndex>> replay;
+
+    /**
+     * Product ids matching every query term, best BM25 score first
+     *
+     * @param prefix whether the last term may match as a prefix, for type-ahead
+     */
+    public long[] search(String query, int limit, boolean prefix) {
+        ensureBuilt();
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            return index.search(query, limit, prefix);
+        } finally {
+            lock.readLock().unlock();
+            queries.increment();
+            queryNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Add or replace a product's text
+     */
+    public void index(long productId, String name, String description) {
+        apply(index -> index.add(productId, name, description));
+    }
+
+    public void remove(long productId) {
+        apply(index -> index.remove(productId));
+    }
+
+    @Scheduled(fixedDelayString = "${search.index.check-interval-ms:600000}")
+    public void compactIfNeeded() {
+        InvertedIndex.Stats stats;
+        lock.readLock().lock();
+        try {
+            if (index == null) return;
+            stats = index.stats();
+        } finally {
+            lock.readLock().unlock();
+        }
+        int total = stats.documents() + stats.retiredDocuments();
+        if (total > 0 && stats.retiredDocuments() > total * maxRetiredRatio) {
+            rebuild();
+        }
+    }
+
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            withWriteLock(() -> replay = new ArrayList<>());
+            InvertedIndex rebuilt;
+            try {
+                rebuilt = load();
+            } catch (RuntimeException e) {
+                withWriteLock(() -> replay = null);
+                throw e;
+            }
+            withWriteLock(() -> {
+                replay.forEach(update -> update.accept(rebuilt));
+                replay = null;
+                index = rebuilt;
+            });
+            InvertedIndex.Stats stats = rebuilt.stats();
+            log.info("Search index built: {} products, {} terms, {} KB of postings in {} ms",
+                    stats.documents(), stats.terms(), stats.postingBytes() / 1024,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    public Stats getStats() {
+        InvertedIndex.Stats stats;
+        lock.readLock().lock();
+        try {
+            stats = index != null ? index.stats() : new InvertedIndex.Stats(0, 0, 0, 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+        long n = queries.sum();
+        return new Stats(stats.documents(), stats.retiredDocuments(), stats.terms(), stats.postingBytes(),
+                n, n == 0 ? 0.0 : queryNanos.sum() / 1e3 / n);
+    }
+
+    public record Stats(int documents, int retiredDocuments, int terms, long postingBytes,
+                        long queries, double avgQueryMicros) {
+    }
+
+    private void ensureBuilt() {
+        lock.readLock().lock();
+        try {
+            if (index != null) return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        synchronized (rebuildLock) {
+            lock.readLock().lock();
+            try {
+                if (index != null) return;
+            } finally {
+                lock.readLock().unlock();
+            }
+            rebuild();
+        }
+    }
+
+    private void apply(Consumer<InvertedIndex> update) {
+        withWriteLock(() -> {
+            if (index != null) {
+                update.accept(index);
+            }
+            if (replay != null) {
+                replay.add(update);
+            }
+        });
+    }
+
+    private void withWriteLock(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private InvertedIndex load() {
+        InvertedIndex loaded = new InvertedIndex();
+        long afterId = 0L;
+        List<Object[]> rows;
+        do {
+            rows = productRepository.findSearchRowsAfter(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                loaded.add(afterId, (String) row[1], (String) row[2]);
+            }
+        } while (rows.size() == LOAD_BATCH_SIZE);
+        return loaded;
+    }
+}
@@ -1,137 +1,169 @@
 package com.ecommerce.service;
 
-import com.ecommerce.model.*;
-import com.ecommerce.repository.CartItemRepository;
-import com.ecommerce.repository.ProductRepository;
-import com.ecommerce.repository.ShoppingCartRepository;
-import com.ecommerce.repository.UserRepository;
+import com.ecommerce.cart.CartStore;
+import com.ecommerce.catalog.ProductSnapshotCache;
+import com.ecommerce.interaction.InteractionIngestor;
+import com.ecommerce.inventory.StockReservationLedger;
+import com.ecommerce.model.CartView;
+import com.ecommerce.model.ProductSnapshot;
+import com.ecommerce.model.UserInteraction;
+import com.ecommerce.recommendation.RecommendationCache;
+import com.ecommerce.recommendation.RecommendationEngine;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Cart operations on the in-memory {@link CartStore}; the database is written
+ * behind by the store, so none of these methods open a transaction.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class CartService {
     
-    private final ShoppingCartRepository cartRepository;
-    private final CartItemRepository cartItemRepository;
-    private final ProductRepository productRepository;
-    private final UserRepository userRepository;
-    private final UserInteractionRepository interactionRepository;
+    private final CartStore cartStore;
+    private final InteractionIngestor interactionIngestor;
+    private final RecommendationEngine recommendationEngine;
+    private final RecommendationCache recommendationCache;
+    private final StockReservationLedger stockLedger;
+    private final ProductSnapshotCache productCache;
     
-    @Transactional
-    public ShoppingCart getOrCreateCart(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        return cartRepository.findByUser(user)
-                .orElseGet(() -> {
-                    ShoppingCart cart = new ShoppingCart();
-                    cart.setUser(user);
-                    return cartRepository.save(cart);
-                });
+    /**
+     * Carts replayed from the cart log held stock in the previous run; hold it
+     * again before requests arrive so other carts cannot reserve it meanwhile
+     */
+    @PostConstruct
+    void reserveRecoveredCarts() {
+        List<Long> userIds = cartStore.takeRecoveredUsers();
+        if (userIds.isEmpty()) {
+            return;
+        }
+        int held = 0, shortOfStock = 0;
+        for (Long userId : userIds) {
+            List<CartStore.Line> lines;
+            try {
+                lines = cartStore.get(userId).lines();
+            } catch (RuntimeException e) {
+                // Quarantined during recovery and the user is gone
+                continue;
+            }
+            Map<Long, ProductSnapshot> products = productCache.getAll(
+                    lines.stream().map(CartStore.Line::productId).toList());
+            for (CartStore.Line line : lines) {
+                ProductSnapshot product = products.get(line.productId());
+                if (product == null) {
+                    continue;
+                }
+                if (stockLedger.adjust(userId, line.productId(), line.quantity(), product.stock())) {
+                    held++;
+                } else {
+                    shortOfStock++;
+                }
+            }
+        }
+        log.info("Restored stock holds for {} recovered cart lines ({} short of stock)", held, shortOfStock);
     }
     
-    @Transactional
-    public CartItem addToCart(Long userId, Long productId, Integer quantity) {
-        ShoppingCart cart = getOrCreateCart(userId);
-        Product product = productRepository.findById(productId)
+    public CartView.Item addToCart(Long userId, Long productId, Integer quantity) {
+        if (quantity <= 0) {
+            throw new RuntimeException("Quantity must be positive");
+        }
+        
+        ProductSnapshot product = productCache.get(productId)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
         
-        if (!product.getActive()) {
+        if (!product.isActive()) {
             throw new RuntimeException("Product is not available");
         }
         
-        if (product.getStockQuantity() < quantity) {
+        // Hold the stock in the in-memory ledger; no stock query on this path
+        if (!stockLedger.reserve(userId, productId, quantity, product.stock())) {
             throw new RuntimeException("Insufficient stock");
         }
         
-        // Check if item already exists in cart
-        Optional<CartItem> existingItem = cart.getCartItems().stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst();
-        
-        if (existingItem.isPresent()) {
-            CartItem item = existingItem.get();
-            item.setQuantity(item.getQuantity() + quantity);
-            cartItemRepository.save(item);
-            
-            // Track interaction
-            trackInteraction(userId, productId, UserInteraction.InteractionType.ADD_TO_CART);
-            
-            return item;
-        } else {
-            CartItem cartItem = new CartItem();
-            cartItem.setCart(cart);
-            cartItem.setProduct(product);
-            cartItem.setQuantity(quantity);
-            
-            cartItem = cartItemRepository.save(cartItem);
-            
-            // Track interaction
-            trackInteraction(userId, productId, UserInteraction.InteractionType.ADD_TO_CART);
-            
-            return cartItem;
+        CartStore.Line line;
+        try {
+            line = cartStore.add(userId, productId, quantity);
+        } catch (RuntimeException e) {
+            stockLedger.release(userId, productId, quantity);
+            throw e;
         }
+        
+        // Track interaction
+        trackInteraction(userId, productId, UserInteraction.InteractionType.ADD_TO_CART);
+        
+        return toItem(line, product);
     }
     
-    @Transactional
     public void removeFromCart(Long userId, Long cartItemId) {
-        ShoppingCart cart = getOrCreateCart(userId);
-        CartItem item = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
-        
-        if (!item.getCart().getId().equals(cart.getId())) {
-            throw new RuntimeException("Cart item does not belong to user");
-        }
-        
-        cartItemRepository.delete(item);
+        CartStore.Line line = cartStore.remove(userId, cartItemId);
+        stockLedger.release(userId, line.productId());
     }
     
-    @Transactional
     public void updateCartItemQuantity(Long userId, Long cartItemId, Integer quantity) {
         if (quantity <= 0) {
             removeFromCart(userId, cartItemId);
             return;
         }
         
-        CartItem item = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
-        
-        Product product = item.getProduct();
-        if (product.getStockQuantity() < quantity) {
+        CartStore.Line line = cartStore.line(userId, cartItemId);
+        int stock = productCache.get(line.productId()).map(ProductSnapshot::stock).orElse(0);
+        if (!stockLedger.adjust(userId, line.productId(), quantity, stock)) {
             throw new RuntimeException("Insufficient stock");
         }
-        
-        item.setQuantity(quantity);
-        cartItemRepository.save(item);
+        try {
+            cartStore.setQuantity(userId, cartItemId, quantity);
+        } catch (RuntimeException e) {
+            stockLedger.adjust(userId, line.productId(), line.quantity(), stock);
+            throw e;
+        }
     }
     
-    public ShoppingCart getCart(Long userId) {
-        return getOrCreateCart(userId);
+    /**
+     * The cart with product details from the snapshot cache; lines of products
+     * that no longer exist are left out
+     */
+    public CartView getCart(Long userId) {
+        CartStore.Contents contents = cartStore.get(userId);
+        List<Long> productIds = contents.lines().stream().map(CartStore.Line::productId).toList();
+        Map<Long, ProductSnapshot> products = productCache.getAll(productIds);
+        
+        List<CartView.Item> items = new ArrayList<>(contents.lines().size());
+        for (CartStore.Line line : contents.lines()) {
+            ProductSnapshot product = products.get(line.productId());
+            if (product != null) {
+                items.add(toItem(line, product));
+            }
+        }
+        return new CartView(contents.cartId() != 0 ? contents.cartId() : null, items);
     }
     
-    @Transactional
     public void clearCart(Long userId) {
-        ShoppingCart cart = getOrCreateCart(userId);
-        cart.getCartItems().clear();
-        cartRepository.save(cart);
+        for (CartStore.Line line : cartStore.clear(userId)) {
+            stockLedger.release(userId, line.productId());
+        }
+    }
+    
+    public CartStore.Stats getStoreStats() {
+        return cartStore.getStats();
+    }
+    
+    private static CartView.Item toItem(CartStore.Line line, ProductSnapshot product) {
+        return new CartView.Item(line.itemId(), line.quantity(), new CartView.ItemProduct(
+                product.id(), product.name(), product.price(), product.discountPrice(), product.stock()));
     }
     
     private void trackInteraction(Long userId, Long productId, UserInteraction.InteractionType type) {
-        try {
-            UserInteraction interaction = new UserInteraction();
-            interaction.setUser(userRepository.findById(userId).orElse(null));
-            interaction.setProduct(productRepository.findById(productId).orElse(null));
-            interaction.setType(type);
-            interactionRepository.save(interaction);
-        } catch (Exception e) {
-            log.warn("Failed to track interaction: {}", e.getMessage());
-        }
+        // Persisted in the background, off the add-to-cart path
+        interactionIngestor.recordAfterCommit(userId, productId, type);
+        recommendationEngine.recordInteraction(userId, productId, type);
+        recommendationCache.invalidate(userId);
     }
 }
 
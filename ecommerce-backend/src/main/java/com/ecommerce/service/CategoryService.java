@@ -0,0 +1,65 @@
+package com.ecommerce.service;
+
+import com.ecommerce.catalog.CategoryTreeCache;
+import com.ecommerce.model.Category;
+import com.ecommerce.model.CategoryNode;
+import com.ecommerce.model.CategorySummary;
+import com.ecommerce.repository.CategoryRepository;
+import com.ecommerce.util.Transactions;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class CategoryService {
+    
+    private final CategoryRepository categoryRepository;
+    private final CategoryTreeCache categoryTree;
+    
+    /**
+     * Get every category, parents before their subcategories
+     */
+    public List<CategorySummary> getAllCategories() {
+        return categoryTree.current().summaries();
+    }
+    
+    /**
+     * Get the top-level categories with their subcategories nested
+     */
+    public List<CategoryNode> getTopLevelCategories() {
+        return categoryTree.current().roots();
+    }
+    
+    public Optional<CategoryNode> getCategory(Long id) {
+        return Optional.ofNullable(categoryTree.current().node(id));
+    }
+    
+    @Transactional
+    public Category createCategory(Category category) {
+        Category saved = categoryRepository.save(category);
+        Transactions.afterCommit(categoryTree::invalidate);
+        return saved;
+    }
+    
+    @Transactional
+    public Category updateCategory(Long id, Category category) {
+        Category existing = categoryRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Category not found"));
+        existing.setName(category.getName());
+        existing.setDescription(category.getDescription());
+        existing.setImageUrl(category.getImageUrl());
+        Transactions.afterCommit(categoryTree::invalidate);
+        return categoryRepository.save(existing);
+    }
+    
+    @Transactional
+    public void deleteCategory(Long id) {
+        categoryRepository.deleteById(id);
+        Transactions.afterCommit(categoryTree::invalidate);
+    }
+}
+
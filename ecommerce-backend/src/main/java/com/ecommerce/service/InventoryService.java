@@ -1,56 +1,187 @@
 package com.ecommerce.service;
 
+import com.ecommerce.catalog.ProductSnapshotCache;
+import com.ecommerce.inventory.StockContentionTracker;
+import com.ecommerce.inventory.StockReservationLedger;
 import com.ecommerce.model.InventoryTransaction;
 import com.ecommerce.model.Product;
+import com.ecommerce.model.ProductSnapshot;
 import com.ecommerce.repository.InventoryTransactionRepository;
 import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.util.Transactions;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class InventoryService {
     
+    private static final String DECREMENT_SQL =
+            "UPDATE products SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?";
+    private static final String PURCHASE_SQL =
+            "UPDATE products SET stock_quantity = stock_quantity - ?, purchase_count = purchase_count + ? " +
+            "WHERE id = ? AND stock_quantity >= ?";
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO inventory_transactions (product_id, type, quantity, reason, created_at) VALUES (?, ?, ?, ?, ?)";
+    
     private final ProductRepository productRepository;
     private final InventoryTransactionRepository transactionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final StockContentionTracker contentionTracker;
+    private final StockReservationLedger stockLedger;
+    private final ProductSnapshotCache productCache;
     
+    /**
+     * Apply a stock change with a single conditional UPDATE, so concurrent
+     * changes cannot overwrite each other or take stock below zero
+     */
     @Transactional
     public void updateInventory(Long productId, Integer quantityChange,
                                 InventoryTransaction.TransactionType type, String reason) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-        
-        int newQuantity = product.getStockQuantity() + quantityChange;
-        if (newQuantity < 0) {
-            throw new RuntimeException("Insufficient inventory. Current: " + 
-                    product.getStockQuantity() + ", Requested: " + Math.abs(quantityChange));
+        if (quantityChange < 0) {
+            long start = System.nanoTime();
+            contentionTracker.begin(productId);
+            int[] updated = null;
+            try {
+                updated = new int[]{productRepository.decrementStock(productId, -quantityChange)};
+            } finally {
+                finishAfterCompletion(List.of(productId), updated, start);
+            }
+            if (updated[0] == 0) {
+                throw insufficientStock(productId, -quantityChange);
+            }
+        } else if (productRepository.incrementStock(productId, quantityChange) == 0) {
+            throw new RuntimeException("Product not found");
         }
-        
-        product.setStockQuantity(newQuantity);
-        productRepository.save(product);
+        productCache.invalidate(productId);
         
         // Record transaction
         InventoryTransaction transaction = new InventoryTransaction();
-        transaction.setProduct(product);
+        transaction.setProduct(productRepository.getReferenceById(productId));
         transaction.setType(type);
         transaction.setQuantity(Math.abs(quantityChange));
         transaction.setReason(reason);
         transactionRepository.save(transaction);
         
-        log.info("Inventory updated for product {}: {} ({}), new quantity: {}", 
-                productId, quantityChange, type, newQuantity);
+        log.info("Inventory updated for product {}: {} ({})", productId, quantityChange, type);
+    }
+    
+    /**
+     * Take stock for several products at once, e.g. a whole order. Conditional
+     * decrements go out as one JDBC batch in product id order, so concurrent
+     * orders lock rows in the same order and cannot deadlock. If any product is
+     * short the exception rolls back the decrements already applied.
+     *
+     * @param quantities product id -> quantity to take
+     */
+    @Transactional
+    public void decrementStock(Map<Long, Integer> quantities, String reason) {
+        decrementStock(quantities, reason, false);
+    }
+    
+    /**
+     * Take stock for a sale, raising each product's purchase count in the same
+     * statement that takes its stock
+     */
+    @Transactional
+    public void decrementStockForPurchase(Map<Long, Integer> quantities, String reason) {
+        decrementStock(quantities, reason, true);
+    }
+    
+    private void decrementStock(Map<Long, Integer> quantities, String reason, boolean purchase) {
+        TreeMap<Long, Integer> ordered = new TreeMap<>(quantities);
+        List<Long> productIds = new ArrayList<>(ordered.keySet());
+        List<Object[]> decrements = new ArrayList<>(ordered.size());
+        List<Object[]> transactions = new ArrayList<>(ordered.size());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        ordered.forEach((productId, quantity) -> {
+            decrements.add(purchase
+                    ? new Object[]{quantity, quantity, productId, quantity}
+                    : new Object[]{quantity, productId, quantity});
+            transactions.add(new Object[]{productId, InventoryTransaction.TransactionType.OUT.name(),
+                    quantity, reason, now});
+        });
+        
+        // Pending entity changes go first so the batch sees and keeps them
+        productRepository.flush();
+        long start = System.nanoTime();
+        productIds.forEach(contentionTracker::begin);
+        int[] updated = null;
+        try {
+            updated = jdbcTemplate.batchUpdate(purchase ? PURCHASE_SQL : DECREMENT_SQL, decrements);
+        } finally {
+            finishAfterCompletion(productIds, updated, start);
+        }
+        
+        Long shortProductId = null;
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                shortProductId = productIds.get(i);
+                break;
+            }
+        }
+        if (shortProductId != null) {
+            throw insufficientStock(shortProductId, ordered.get(shortProductId));
+        }
+        
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION_SQL, transactions);
+        productCache.invalidateAll(productIds);
+        log.info("Stock taken for {} products ({})", productIds.size(), reason);
+    }
+    
+    public List<StockContentionTracker.SkuStats> getStockContention(int limit) {
+        return contentionTracker.top(limit);
+    }
+    
+    public StockReservationLedger.Stats getReservationStats() {
+        return stockLedger.getStats();
+    }
+    
+    /**
+     * Row locks are held until the transaction ends, so that is when the
+     * products stop counting as in flight. Called from a finally block, so a
+     * failed UPDATE (deadlock, lock wait timeout) still ends them; updated is
+     * then null and every product counts as rejected.
+     *
+     * @param updated row count per product, in the order of productIds
+     */
+    private void finishAfterCompletion(List<Long> productIds, int[] updated, long start) {
+        Transactions.afterCompletion(() -> {
+            long elapsed = System.nanoTime() - start;
+            for (int i = 0; i < productIds.size(); i++) {
+                contentionTracker.finish(productIds.get(i), updated != null && updated[i] != 0, elapsed);
+            }
+        });
+    }
+    
+    private RuntimeException insufficientStock(Long productId, int requested) {
+        Integer current = productRepository.findStockQuantityById(productId);
+        if (current == null) {
+            return new RuntimeException("Product not found");
+        }
+        return new RuntimeException("Insufficient inventory for product " + productId +
+                ". Current: " + current + ", Requested: " + requested);
     }
     
     public boolean checkStockAvailability(Long productId, Integer requestedQuantity) {
-        Product product = productRepository.findById(productId)
+        long available = stockLedger.available(productId);
+        if (available >= 0) {
+            return available >= requestedQuantity;
+        }
+        ProductSnapshot product = productCache.get(productId)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
-        return product.getStockQuantity() >= requestedQuantity;
+        return product.stock() >= requestedQuantity;
     }
     
     public List<Product> getLowStockProducts(int threshold) {
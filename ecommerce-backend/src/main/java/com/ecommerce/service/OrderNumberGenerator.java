@@ -0,0 +1,10 @@
+package com.ecommerce.service;
+
+/**
+ * Source of unique order numbers; replace the bean to change the format
+ */
+@FunctionalInterface
+public interface OrderNumberGenerator {
+    
+    String nextOrderNumber();
+}
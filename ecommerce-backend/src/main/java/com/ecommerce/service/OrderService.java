@@ -1,101 +1,139 @@
 package com.ecommerce.service;
 
+import com.ecommerce.cart.CartStore;
+import com.ecommerce.interaction.InteractionIngestor;
+import com.ecommerce.inventory.StockReservationLedger;
 import com.ecommerce.model.*;
+import com.ecommerce.recommendation.PopularityRanking;
+import com.ecommerce.recommendation.RecommendationCache;
+import com.ecommerce.recommendation.RecommendationEngine;
 import com.ecommerce.repository.OrderRepository;
 import com.ecommerce.repository.ProductRepository;
-import com.ecommerce.repository.ShoppingCartRepository;
-import com.ecommerce.repository.UserInteractionRepository;
+import com.ecommerce.repository.UserRepository;
+import com.ecommerce.util.Transactions;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StopWatch;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class OrderService {
     
+    private static final String INSERT_ORDER_ITEM_SQL =
+            "INSERT INTO order_items (order_id, product_id, quantity, unit_price, subtotal) VALUES (?, ?, ?, ?, ?)";
+    
     private final OrderRepository orderRepository;
-    private final ShoppingCartRepository cartRepository;
+    private final CartStore cartStore;
     private final ProductRepository productRepository;
-    private final UserInteractionRepository interactionRepository;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final InteractionIngestor interactionIngestor;
     private final InventoryService inventoryService;
+    private final RecommendationEngine recommendationEngine;
+    private final PopularityRanking popularityRanking;
+    private final RecommendationCache recommendationCache;
+    private final StockReservationLedger stockLedger;
+    private final OrderNumberGenerator orderNumberGenerator;
     
+    /**
+     * Create an order from the user's cart in a single pass: the cart comes from
+     * the in-memory store and one query loads its products, then the order items,
+     * the stock decrements with purchase counts and the inventory transactions
+     * each go out as one JDBC batch. The ordered quantities leave the cart and
+     * interactions are queued for the background writer after commit.
+     */
     @Transactional
     public Order createOrderFromCart(Long userId, Order.PaymentMethod paymentMethod, 
                                     String paymentTransactionId, Order.Address shippingAddress) {
-        ShoppingCart cart = cartRepository.findByUser(
-                new User() {{ setId(userId); }}
-        ).orElseThrow(() -> new RuntimeException("Cart not found"));
+        StopWatch stages = new StopWatch("checkout");
+        stages.start("load");
+        List<CartStore.Line> lines = cartStore.get(userId).lines();
         
-        if (cart.getCartItems().isEmpty()) {
+        if (lines.isEmpty()) {
             throw new RuntimeException("Cart is empty");
         }
+        Map<Long, Product> products = productRepository.findAllById(
+                        lines.stream().map(CartStore.Line::productId).toList())
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        stages.stop();
         
+        stages.start("validate");
         Order order = new Order();
-        order.setUser(cart.getUser());
+        order.setOrderNumber(orderNumberGenerator.nextOrderNumber());
+        order.setUser(userRepository.getReferenceById(userId));
         order.setPaymentMethod(paymentMethod);
         order.setPaymentTransactionId(paymentTransactionId);
         order.setShippingAddress(shippingAddress);
         order.setStatus(Order.OrderStatus.PENDING);
         
         BigDecimal totalAmount = BigDecimal.ZERO;
+        Map<Long, Integer> quantities = new HashMap<>();
+        List<Object[]> orderItems = new ArrayList<>(lines.size());
         
-        for (CartItem cartItem : cart.getCartItems()) {
-            Product product = cartItem.getProduct();
+        for (CartStore.Line line : lines) {
+            Product product = products.get(line.productId());
+            if (product == null) {
+                throw new RuntimeException("Product not found: " + line.productId());
+            }
             
-            // Check stock availability
-            if (product.getStockQuantity() < cartItem.getQuantity()) {
+            // Fast check; the conditional decrement below is authoritative
+            if (!product.getActive() || product.getStockQuantity() < line.quantity()) {
                 throw new RuntimeException("Insufficient stock for product: " + product.getName());
             }
             
-            OrderItem orderItem = new OrderItem();
-            orderItem.setOrder(order);
-            orderItem.setProduct(product);
-            orderItem.setQuantity(cartItem.getQuantity());
-            
             BigDecimal unitPrice = product.getDiscountPrice() != null && 
                     product.getDiscountPrice().compareTo(BigDecimal.ZERO) > 0
                     ? product.getDiscountPrice()
                     : product.getPrice();
+            BigDecimal subtotal = unitPrice.multiply(BigDecimal.valueOf(line.quantity()));
             
-            orderItem.setUnitPrice(unitPrice);
-            orderItem.setSubtotal(unitPrice.multiply(BigDecimal.valueOf(cartItem.getQuantity())));
-            
-            totalAmount = totalAmount.add(orderItem.getSubtotal());
-            
-            // Track user interaction
-            UserInteraction interaction = new UserInteraction();
-            interaction.setUser(order.getUser());
-            interaction.setProduct(product);
-            interaction.setType(UserInteraction.InteractionType.PURCHASE);
-            interactionRepository.save(interaction);
-            
-            // Update product purchase count
-            product.setPurchaseCount(product.getPurchaseCount() + cartItem.getQuantity());
-            productRepository.save(product);
+            totalAmount = totalAmount.add(subtotal);
+            quantities.merge(product.getId(), line.quantity(), Integer::sum);
+            orderItems.add(new Object[]{product.getId(), line.quantity(), unitPrice, subtotal});
         }
+        stages.stop();
         
+        stages.start("order");
         order.setTotalAmount(totalAmount);
         order = orderRepository.save(order);
+        Long orderId = order.getId();
+        jdbcTemplate.batchUpdate(INSERT_ORDER_ITEM_SQL, orderItems.stream()
+                .map(item -> new Object[]{orderId, item[0], item[1], item[2], item[3]})
+                .toList());
+        stages.stop();
         
-        // Update inventory
-        for (CartItem cartItem : cart.getCartItems()) {
-            inventoryService.updateInventory(cartItem.getProduct().getId(), 
-                    -cartItem.getQuantity(), 
-                    InventoryTransaction.TransactionType.OUT, 
-                    "Order: " + order.getOrderNumber());
-        }
+        // Row locks on the products are taken last to keep them short
+        stages.start("stock");
+        inventoryService.decrementStockForPurchase(quantities, "Order: " + order.getOrderNumber());
+        stages.stop();
         
-        // Clear cart
-        cart.getCartItems().clear();
-        cartRepository.save(cart);
+        Transactions.afterCommit(() -> {
+            cartStore.consume(userId, quantities);
+            stockLedger.commit(userId, quantities);
+            quantities.forEach((productId, quantity) -> {
+                interactionIngestor.record(userId, productId, UserInteraction.InteractionType.PURCHASE);
+                recommendationEngine.recordInteraction(userId, productId, UserInteraction.InteractionType.PURCHASE);
+                popularityRanking.recordPurchase(productId, quantity);
+            });
+            recommendationCache.invalidate(userId);
+        });
         
-        log.info("Order created: {} for user: {}", order.getOrderNumber(), userId);
+        log.info("Order created: {} for user: {}, {} lines in {} ms ({})", order.getOrderNumber(), userId,
+                orderItems.size(), stages.getTotalTimeMillis(), formatStages(stages));
         
         return order;
     }
@@ -105,7 +143,7 @@ public class OrderService {
     }
     
     public Optional<Order> getOrderById(Long id) {
-        return orderRepository.findById(id);
+        return orderRepository.findWithItemsById(id);
     }
     
     public Optional<Order> getOrderByOrderNumber(String orderNumber) {
@@ -119,5 +157,13 @@ public class OrderService {
         order.setStatus(status);
         return orderRepository.save(order);
     }
+    
+    private static String formatStages(StopWatch stages) {
+        StringBuilder sb = new StringBuilder();
+        for (StopWatch.TaskInfo task : stages.getTaskInfo()) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(task.getTaskName()).append('=').append(task.getTimeMillis()).append("ms");
+        }
+        return sb.toString();
+    }
 }
-
@@ -1,48 +1,194 @@
 package com.ecommerce.service;
 
+import com.ecommerce.catalog.CatalogueFacets;
+import com.ecommerce.catalog.CategoryTreeCache;
+import com.ecommerce.catalog.ProductSnapshotCache;
+import com.ecommerce.interaction.InteractionIngestor;
+import com.ecommerce.interaction.ViewCounter;
+import com.ecommerce.inventory.StockReservationLedger;
+import com.ecommerce.model.CursorPage;
+import com.ecommerce.model.FacetedProducts;
+import com.ecommerce.model.InventoryTransaction;
 import com.ecommerce.model.Product;
+import com.ecommerce.model.ProductSummary;
+import com.ecommerce.model.UserInteraction;
+import com.ecommerce.recommendation.PopularityRanking;
+import com.ecommerce.recommendation.RecommendationEngine;
 import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.search.ProductSearchIndex;
+import com.ecommerce.util.KeysetCursor;
+import com.ecommerce.util.Transactions;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
     
+    // Cursor key of a row whose sort column is NULL; real keys are never this low
+    private static final long NULL_KEY = Long.MIN_VALUE;
+    
     private final ProductRepository productRepository;
+    private final PopularityRanking popularityRanking;
+    private final ViewCounter viewCounter;
+    private final InteractionIngestor interactionIngestor;
+    private final RecommendationEngine recommendationEngine;
+    private final StockReservationLedger stockLedger;
+    private final ProductSearchIndex searchIndex;
+    private final CatalogueFacets catalogueFacets;
+    private final CategoryTreeCache categoryTree;
+    private final ProductSnapshotCache productCache;
+    private final InventoryService inventoryService;
+    
+    /**
+     * Get a page of active products as listing rows
+     */
+    public Page<ProductSummary> getAllProducts(Pageable pageable) {
+        return productRepository.findSummariesByActiveTrue(pageable);
+    }
     
-    public Page<Product> getAllProducts(Pageable pageable) {
-        return productRepository.findByActiveTrue(pageable);
+    /**
+     * Get the slice of active products after a cursor, or the first slice when
+     * the cursor is null. Seeks on (sort key, id) instead of skipping rows, so
+     * deep slices cost the same as the first one.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or was issued for another ordering
+     */
+    public CursorPage<ProductSummary> getProductsAfter(ListingOrder order, String cursor, int size) {
+        Pageable limit = PageRequest.of(0, size);
+        KeysetCursor after = cursor != null ? KeysetCursor.decode(cursor, order.ordinal()) : null;
+        Slice<ProductSummary> slice = switch (order) {
+            case NEWEST -> after == null
+                    ? productRepository.findNewestSummaries(limit)
+                    : after.key() == NULL_KEY
+                    ? productRepository.findNullCreatedSummariesBefore(after.id(), limit)
+                    : productRepository.findNewestSummariesBefore(toDateTime(after.key()), after.id(), limit);
+            case POPULAR -> after == null
+                    ? productRepository.findPopularSummaries(limit)
+                    : after.key() == NULL_KEY
+                    ? productRepository.findNullPurchaseCountSummariesAfter(after.id(), limit)
+                    : productRepository.findPopularSummariesAfter(after.key(), after.id(), limit);
+        };
+        
+        List<ProductSummary> content = slice.getContent();
+        String next = null;
+        if (slice.hasNext() && !content.isEmpty()) {
+            ProductSummary last = content.get(content.size() - 1);
+            next = new KeysetCursor(order.ordinal(), keyOf(order, last), last.id()).encode();
+        }
+        return new CursorPage<>(content, next, next != null);
     }
     
-    public Optional<Product> getProductById(Long id) {
+    /**
+     * Orderings of the keyset-paged listing; both break ties by descending id
+     */
+    public enum ListingOrder {
+        NEWEST,
+        POPULAR
+    }
+    
+    private static long keyOf(ListingOrder order, ProductSummary row) {
+        if (order == ListingOrder.NEWEST) {
+            return row.createdAt() != null ? toKey(row.createdAt()) : NULL_KEY;
+        }
+        return row.purchaseCount() != null ? row.purchaseCount() : NULL_KEY;
+    }
+    
+    private static long toKey(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+    }
+    
+    private static LocalDateTime toDateTime(long key) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(key, 1_000_000_000L),
+                (int) Math.floorMod(key, 1_000_000_000L), ZoneOffset.UTC);
+    }
+    
+    /**
+     * Get a product and count the view; the view count is written behind in
+     * batches and a VIEW interaction is queued when the viewer is known
+     */
+    public Optional<Product> getProductById(Long id, Long userId) {
         Optional<Product> product = productRepository.findById(id);
         if (product.isPresent() && product.get().getActive()) {
-            // Increment view count
-            Product p = product.get();
-            p.setViewCount(p.getViewCount() + 1);
-            productRepository.save(p);
+            viewCounter.recordView(id);
+            popularityRanking.recordView(id);
+            if (userId != null) {
+                interactionIngestor.tryRecord(userId, id, UserInteraction.InteractionType.VIEW);
+                recommendationEngine.recordInteraction(userId, id, UserInteraction.InteractionType.VIEW);
+            }
         }
         return product;
     }
     
-    public List<Product> getProductsByCategory(Long categoryId) {
-        return productRepository.findByCategoryIdAndActiveTrue(categoryId);
+    public List<ProductSummary> getProductsByCategory(Long categoryId) {
+        return productRepository.findSummariesByCategoryId(categoryId);
+    }
+    
+    /**
+     * Get products of a category and all of its subcategories; the subtree comes
+     * from the category tree snapshot, so this is a single IN-list query
+     */
+    public Page<ProductSummary> getProductsInCategoryTree(Long categoryId, Pageable pageable) {
+        long[] categoryIds = categoryTree.current().subtreeIds(categoryId);
+        if (categoryIds.length == 0) {
+            return Page.empty(pageable);
+        }
+        return productRepository.findSummariesByCategoryIdIn(Arrays.stream(categoryIds).boxed().toList(), pageable);
     }
     
-    public List<Product> searchProducts(String query) {
-        return productRepository.findByNameContainingIgnoreCaseAndActiveTrue(query);
+    /**
+     * Rank matches with the in-process search index, then load their listing rows
+     *
+     * @param prefix whether the last query term may match as a prefix, for type-ahead
+     */
+    public List<ProductSummary> searchProducts(String query, int limit, boolean prefix) {
+        return loadSummaries(searchIndex.search(query, limit, prefix));
+    }
+    
+    /**
+     * Filter the catalogue by facets in memory and load listing rows for one page
+     */
+    public FacetedProducts getFacetedProducts(Set<Long> categoryIds, Set<Integer> priceBuckets,
+                                              boolean discountedOnly, boolean inStockOnly, int page, int size) {
+        CatalogueFacets.Result result = catalogueFacets.query(categoryIds, priceBuckets,
+                discountedOnly, inStockOnly, page * size, size);
+        return new FacetedProducts(loadSummaries(result.productIds()), result.total(), result.categoryCounts(),
+                result.priceBuckets(), result.discountedCount(), result.inStockCount());
+    }
+    
+    public CatalogueFacets.Stats getFacetStats() {
+        return catalogueFacets.getStats();
+    }
+    
+    public ProductSnapshotCache.Stats getProductCacheStats() {
+        return productCache.getStats();
+    }
+    
+    public ProductSearchIndex.Stats getSearchStats() {
+        return searchIndex.getStats();
     }
     
     @Transactional
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        reindexAfterCommit(saved);
+        return saved;
     }
     
     @Transactional
@@ -59,6 +205,10 @@ public class ProductService {
         product.setStockQuantity(productDetails.getStockQuantity());
         product.setActive(productDetails.getActive());
         
+        // Stock may have been set directly; let the ledger pick up the new value
+        Transactions.afterCommit(() -> stockLedger.evict(id));
+        productCache.invalidate(id);
+        reindexAfterCommit(product);
         return productRepository.save(product);
     }
     
@@ -68,14 +218,62 @@ public class ProductService {
                 .orElseThrow(() -> new RuntimeException("Product not found"));
         product.setActive(false);
         productRepository.save(product);
+        productCache.invalidate(id);
+        Transactions.afterCommit(() -> {
+            searchIndex.remove(id);
+            catalogueFacets.remove(id);
+        });
     }
     
+    /**
+     * Apply a stock change through the inventory service, so it is a conditional
+     * UPDATE with an inventory transaction the reservation ledger syncs from
+     */
     @Transactional
     public void updateStock(Long productId, Integer quantity) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-        product.setStockQuantity(product.getStockQuantity() + quantity);
-        productRepository.save(product);
+        inventoryService.updateInventory(productId, quantity,
+                InventoryTransaction.TransactionType.ADJUSTMENT, "Stock update");
+        int stock = productRepository.findStockQuantityById(productId);
+        Transactions.afterCommit(() -> catalogueFacets.updateStock(productId, stock));
+    }
+    
+    /**
+     * Listing rows for product ids, in the order given; inactive or missing products are skipped
+     */
+    private List<ProductSummary> loadSummaries(long[] ids) {
+        if (ids.length == 0) {
+            return List.of();
+        }
+        Map<Long, ProductSummary> summaries = productRepository
+                .findSummariesByIdIn(Arrays.stream(ids).boxed().toList()).stream()
+                .collect(Collectors.toMap(ProductSummary::id, Function.identity()));
+        return Arrays.stream(ids)
+                .mapToObj(summaries::get)
+                .filter(summary -> summary != null)
+                .toList();
+    }
+    
+    /**
+     * Update the search index and catalogue facets once the product change is committed
+     */
+    private void reindexAfterCommit(Product product) {
+        long id = product.getId();
+        String name = product.getName();
+        String description = product.getDescription();
+        Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        BigDecimal price = product.getPrice();
+        BigDecimal discountPrice = product.getDiscountPrice();
+        int stock = product.getStockQuantity() != null ? product.getStockQuantity() : 0;
+        boolean active = Boolean.TRUE.equals(product.getActive());
+        Transactions.afterCommit(() -> {
+            if (active) {
+                searchIndex.index(id, name, description);
+                catalogueFacets.put(id, categoryId, price, discountPrice, stock);
+            } else {
+                searchIndex.remove(id);
+                catalogueFacets.remove(id);
+            }
+        });
     }
 }
 
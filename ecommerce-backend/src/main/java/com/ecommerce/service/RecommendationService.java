@@ -1,15 +1,24 @@
 package com.ecommerce.service;
 
-import com.ecommerce.model.Product;
+import com.ecommerce.cache.CacheRegions;
+import com.ecommerce.catalog.ProductSnapshotCache;
+import com.ecommerce.interaction.InteractionIngestor;
+import com.ecommerce.model.ProductSnapshot;
 import com.ecommerce.model.ProductRecommendation;
 import com.ecommerce.model.User;
-import com.ecommerce.model.UserInteraction;
-import com.ecommerce.repository.ProductRepository;
-import com.ecommerce.repository.UserInteractionRepository;
+import com.ecommerce.recommendation.ItemBasedRecommender;
+import com.ecommerce.recommendation.PopularityRanking;
+import com.ecommerce.recommendation.RecommendationCache;
+import com.ecommerce.recommendation.RecommendationEngine;
+import com.ecommerce.recommendation.RecommendationMode;
 import com.ecommerce.repository.UserRepository;
+import com.ecommerce.util.LongDoubleHashMap;
+import com.ecommerce.util.TopKSelector;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -20,82 +29,61 @@ import java.util.stream.Collectors;
 @Slf4j
 public class RecommendationService {
     
-    private final UserInteractionRepository interactionRepository;
-    private final ProductRepository productRepository;
+    private final RecommendationEngine recommendationEngine;
+    private final ItemBasedRecommender itemBasedRecommender;
+    private final PopularityRanking popularityRanking;
+    private final RecommendationCache recommendationCache;
+    private final InteractionIngestor interactionIngestor;
+    private final ProductSnapshotCache productCache;
     private final UserRepository userRepository;
+    private final CacheRegions cacheRegions;
+    
+    // Hydrated popular lists by category (null for all products) and size
+    private LoadingCache<PopularKey, List<ProductRecommendation>> popularLists;
+    
+    @Value("${ml.recommendation.algorithm:collaborative-filtering}")
+    private String algorithm;
+    
+    @PostConstruct
+    void initPopularLists() {
+        popularLists = cacheRegions.loadingCache("popular", key -> List.copyOf(loadPopularProducts(key)));
+    }
     
     /**
-     * Get personalized product recommendations for a user using collaborative filtering
+     * Get personalized product recommendations for a user using collaborative filtering,
+     * or item-item neighbours when {@code ml.recommendation.algorithm} is item-based
      */
-    @Cacheable(value = "recommendations", key = "#userId")
     public List<ProductRecommendation> getRecommendations(Long userId, int count) {
+        return recommendationCache.get(userId, count, depth -> computeRecommendations(userId, depth));
+    }
+    
+    private List<ProductRecommendation> computeRecommendations(Long userId, int count) {
         log.info("Generating recommendations for user: {}", userId);
         
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         
-        // Get user's interaction history
-        List<UserInteraction> userInteractions = interactionRepository.findByUserId(userId);
+        // Score candidates from the in-memory interaction matrix
+        RecommendationMode mode = RecommendationMode.fromProperty(algorithm);
+        if (mode == RecommendationMode.ITEM_BASED && !itemBasedRecommender.hasModel()) {
+            // No item model built yet: fall back to user-based collaborative filtering
+            mode = RecommendationMode.COLLABORATIVE;
+        }
+        LongDoubleHashMap productScores = mode == RecommendationMode.ITEM_BASED
+                ? itemBasedRecommender.score(userId)
+                : recommendationEngine.score(userId);
         
-        if (userInteractions.isEmpty()) {
+        if (productScores == null) {
             // If no interactions, return popular products
             return getPopularProducts(count);
         }
         
-        // Extract product IDs the user has interacted with
-        Set<Long> userProductIds = userInteractions.stream()
-                .map(interaction -> interaction.getProduct().getId())
-                .collect(Collectors.toSet());
-        
-        // Collaborative filtering: find similar users
-        Map<Long, Double> productScores = new HashMap<>();
-        
-        // Get all users and their interactions
-        List<User> allUsers = userRepository.findAll();
-        
-        for (User otherUser : allUsers) {
-            if (otherUser.getId().equals(userId)) continue;
-            
-            List<UserInteraction> otherUserInteractions = interactionRepository.findByUserId(otherUser.getId());
-            if (otherUserInteractions.isEmpty()) continue;
-            
-            // Calculate similarity
-            double similarity = calculateUserSimilarity(userInteractions, otherUserInteractions);
-            
-            if (similarity > 0.3) { // Similarity threshold
-                // Weight products by similarity
-                for (UserInteraction interaction : otherUserInteractions) {
-                    Long productId = interaction.getProduct().getId();
-                    if (!userProductIds.contains(productId)) {
-                        double weight = similarity * getInteractionWeight(interaction.getType());
-                        productScores.merge(productId, weight, Double::sum);
-                    }
-                }
-            }
-        }
-        
-        // Add content-based recommendations
-        addContentBasedRecommendations(userInteractions, productScores, userProductIds);
+        // Select the top recommendations without sorting every scored product
+        TopKSelector topK = new TopKSelector(Math.min(count, productScores.size()));
+        topK.offerAll(productScores);
+        topK.sort();
         
-        // Sort by score and get top recommendations
-        List<ProductRecommendation> recommendations = productScores.entrySet().stream()
-                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
-                .limit(count)
-                .map(entry -> {
-                    Product product = productRepository.findById(entry.getKey())
-                            .orElse(null);
-                    if (product != null && product.getActive()) {
-                        return new ProductRecommendation(
-                                product.getId(),
-                                product.getName(),
-                                entry.getValue(),
-                                "COLLABORATIVE"
-                        );
-                    }
-                    return null;
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        List<ProductRecommendation> recommendations = hydrate(topK.ids(), topK.scores(), mode.name());
         
         // Fill remaining slots with popular products if needed
         if (recommendations.size() < count) {
@@ -117,96 +105,59 @@ public class RecommendationService {
     }
     
     /**
-     * Calculate similarity between two users based on their interactions
-     */
-    private double calculateUserSimilarity(List<UserInteraction> user1Interactions, 
-                                          List<UserInteraction> user2Interactions) {
-        Set<Long> user1Products = user1Interactions.stream()
-                .map(i -> i.getProduct().getId())
-                .collect(Collectors.toSet());
-        
-        Set<Long> user2Products = user2Interactions.stream()
-                .map(i -> i.getProduct().getId())
-                .collect(Collectors.toSet());
-        
-        // Jaccard similarity
-        Set<Long> intersection = new HashSet<>(user1Products);
-        intersection.retainAll(user2Products);
-        
-        Set<Long> union = new HashSet<>(user1Products);
-        union.addAll(user2Products);
-        
-        if (union.isEmpty()) return 0.0;
-        
-        return (double) intersection.size() / union.size();
-    }
-    
-    /**
-     * Get weight for different interaction types
+     * Resolve ranked product ids to recommendations from the product snapshot
+     * cache, loading misses with a single IN query, keeping the ranking order
+     * and dropping missing or inactive products
      */
-    private double getInteractionWeight(UserInteraction.InteractionType type) {
-        switch (type) {
-            case PURCHASE: return 5.0;
-            case ADD_TO_CART: return 2.0;
-            case VIEW: return 1.0;
-            case RATING: return 3.0;
-            default: return 1.0;
+    private List<ProductRecommendation> hydrate(long[] productIds, double[] scores, String recommendationType) {
+        List<Long> ids = new ArrayList<>(productIds.length);
+        for (long productId : productIds) {
+            ids.add(productId);
         }
-    }
-    
-    /**
-     * Add content-based recommendations based on user's preferred categories
-     */
-    private void addContentBasedRecommendations(List<UserInteraction> userInteractions,
-                                                Map<Long, Double> productScores,
-                                                Set<Long> userProductIds) {
-        // Get preferred categories from user interactions
-        Map<Long, Long> categoryPreferences = userInteractions.stream()
-                .collect(Collectors.groupingBy(
-                        i -> i.getProduct().getCategory().getId(),
-                        Collectors.counting()
+        Map<Long, ProductSnapshot> products = productCache.getAll(ids);
+        
+        List<ProductRecommendation> recommendations = new ArrayList<>(productIds.length);
+        for (int rank = 0; rank < productIds.length; rank++) {
+            ProductSnapshot product = products.get(productIds[rank]);
+            if (product != null && product.isActive()) {
+                recommendations.add(new ProductRecommendation(
+                        product.id(),
+                        product.name(),
+                        scores[rank],
+                        recommendationType
                 ));
-        
-        // Find products in preferred categories
-        for (Map.Entry<Long, Long> entry : categoryPreferences.entrySet()) {
-            Long categoryId = entry.getKey();
-            Long interactionCount = entry.getValue();
-            
-            List<Product> categoryProducts = productRepository.findByCategoryIdAndActiveTrue(categoryId);
-            for (Product product : categoryProducts) {
-                if (!userProductIds.contains(product.getId()) && product.getActive()) {
-                    double score = interactionCount * 0.5; // Content-based weight
-                    productScores.merge(product.getId(), score, Double::sum);
-                }
             }
         }
+        return recommendations;
     }
     
     /**
-     * Get popular products based on purchase count and views
+     * Get popular products from the materialized popularity ranking
      */
     private List<ProductRecommendation> getPopularProducts(int count) {
-        return productRepository.findTopByOrderByPurchaseCountDescViewCountDesc(count)
-                .stream()
-                .filter(Product::getActive)
-                .map(product -> new ProductRecommendation(
-                        product.getId(),
-                        product.getName(),
-                        calculatePopularityScore(product),
-                        "POPULAR"
-                ))
-                .sorted(Comparator.comparing(ProductRecommendation::getScore).reversed())
-                .limit(count)
-                .collect(Collectors.toList());
+        return popularLists.get(new PopularKey(null, count));
     }
     
     /**
-     * Calculate popularity score based on purchases and views
+     * Get the most popular products of a category
      */
-    private double calculatePopularityScore(Product product) {
-        long purchases = product.getPurchaseCount() != null ? product.getPurchaseCount() : 0;
-        long views = product.getViewCount() != null ? product.getViewCount() : 0;
-        return (purchases * 10.0) + (views * 0.1);
+    public List<ProductRecommendation> getPopularProducts(Long categoryId, int count) {
+        return popularLists.get(new PopularKey(categoryId, count));
+    }
+    
+    private List<ProductRecommendation> loadPopularProducts(PopularKey key) {
+        PopularityRanking.Ranking ranking = key.categoryId() != null
+                ? popularityRanking.top(key.categoryId(), key.count())
+                : popularityRanking.top(key.count());
+        return hydrate(ranking.productIds(), ranking.scores(), "POPULAR");
+    }
+    
+    public RecommendationCache.Stats getCacheStats() {
+        return recommendationCache.getStats();
+    }
+    
+    public InteractionIngestor.Stats getInteractionStats() {
+        return interactionIngestor.getStats();
     }
     
     /**
@@ -215,5 +166,8 @@ public class RecommendationService {
     public List<ProductRecommendation> getGuestRecommendations(int count) {
         return getPopularProducts(count);
     }
+    
+    private record PopularKey(Long categoryId, int count) {
+    }
 }
 
@@ -0,0 +1,430 @@
+package com.ecommerce.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed bitmap of non-negative ints, in the style of Roaring bitmaps.
+ *
+ * Values are split into 65536-wide chunks by their high 16 bits. A sparse chunk
+ * keeps its low 16 bits as a sorted char array; once it holds more than 4096
+ * values it switches to a 1024-word bitset, which is then the smaller of the
+ * two. Set operations work chunk by chunk and only touch chunks present in both
+ * operands. Not thread-safe.
+ */
+public class IntBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1 << 10;
+
+    // Chunk keys (high 16 bits) in ascending order, parallel to chunks
+    private char[] keys;
+    private Chunk[] chunks;
+    private int size;
+
+    public IntBitmap() {
+        keys = new char[4];
+        chunks = new Chunk[4];
+    }
+
+    public boolean add(int value) {
+        checkValue(value);
+        char key = (char) (value >>> 16);
+        int index = indexOf(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertChunk(index, key, new Chunk(new char[4], 0));
+        }
+        return chunks[index].add((char) value);
+    }
+
+    public boolean remove(int value) {
+        if (value < 0) return false;
+        int index = indexOf((char) (value >>> 16));
+        if (index < 0) return false;
+        boolean removed = chunks[index].remove((char) value);
+        if (chunks[index].cardinality == 0) {
+            removeChunk(index);
+        }
+        return removed;
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) return false;
+        int index = indexOf((char) (value >>> 16));
+        return index >= 0 && chunks[index].contains((char) value);
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += chunks[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Visit values in ascending order
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            chunks[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * Up to {@code limit} values in ascending order, skipping the first {@code offset}
+     */
+    public int[] slice(int offset, int limit) {
+        int[] values = new int[Math.max(0, Math.min(limit, cardinality() - offset))];
+        int[] position = {0};
+        forEach(value -> {
+            int p = position[0]++ - offset;
+            if (p >= 0 && p < values.length) {
+                values[p] = value;
+            }
+        });
+        return values;
+    }
+
+    public IntBitmap copy() {
+        IntBitmap copy = new IntBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(size, 4));
+        copy.chunks = new Chunk[copy.keys.length];
+        for (int i = 0; i < size; i++) {
+            copy.chunks[i] = chunks[i].copy();
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    public static IntBitmap and(IntBitmap a, IntBitmap b) {
+        IntBitmap result = new IntBitmap();
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Chunk chunk = a.chunks[i].and(b.chunks[j]);
+                if (chunk.cardinality > 0) {
+                    result.appendChunk(a.keys[i], chunk);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public static IntBitmap or(IntBitmap a, IntBitmap b) {
+        IntBitmap result = new IntBitmap();
+        int i = 0, j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.appendChunk(a.keys[i], a.chunks[i++].copy());
+            } else if (i == a.size || a.keys[i] > b.keys[j]) {
+                result.appendChunk(b.keys[j], b.chunks[j++].copy());
+            } else {
+                result.appendChunk(a.keys[i], a.chunks[i++].or(b.chunks[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Size of the intersection, without materializing it
+     */
+    public static int andCardinality(IntBitmap a, IntBitmap b) {
+        int cardinality = 0;
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                cardinality += a.chunks[i++].andCardinality(b.chunks[j++]);
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * Approximate heap footprint in bytes
+     */
+    public long sizeInBytes() {
+        long bytes = 16 + keys.length * 2L + chunks.length * 8L;
+        for (int i = 0; i < size; i++) {
+            bytes += chunks[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertChunk(int index, char key, Chunk chunk) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            chunks = Arrays.copyOf(chunks, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(chunks, index, chunks, index + 1, size - index);
+        keys[index] = key;
+        chunks[index] = chunk;
+        size++;
+    }
+
+    private void appendChunk(char key, Chunk chunk) {
+        insertChunk(size, key, chunk);
+    }
+
+    private void removeChunk(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(chunks, index + 1, chunks, index, size - index - 1);
+        chunks[--size] = null;
+    }
+
+    /**
+     * Low 16 bits of one chunk: a sorted array while sparse, a bitset once dense
+     */
+    private static final class Chunk {
+
+        char[] array;
+        long[] words;
+        int cardinality;
+
+        Chunk(char[] array, int cardinality) {
+            this.array = array;
+            this.cardinality = cardinality;
+        }
+
+        Chunk(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        boolean add(char low) {
+            if (words != null) {
+                long before = words[low >>> 6];
+                words[low >>> 6] = before | (1L << low);
+                if (before == words[low >>> 6]) return false;
+                cardinality++;
+                return true;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, low);
+            if (index >= 0) return false;
+            if (cardinality == ARRAY_MAX) {
+                toWords();
+                return add(low);
+            }
+            index = -index - 1;
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(array, index, array, index + 1, cardinality - index);
+            array[index] = low;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char low) {
+            if (words != null) {
+                long before = words[low >>> 6];
+                words[low >>> 6] = before & ~(1L << low);
+                if (before == words[low >>> 6]) return false;
+                if (--cardinality <= ARRAY_MAX) {
+                    toArray();
+                }
+                return true;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, low);
+            if (index < 0) return false;
+            System.arraycopy(array, index + 1, array, index, cardinality - index - 1);
+            cardinality--;
+            return true;
+        }
+
+        boolean contains(char low) {
+            if (words != null) {
+                return (words[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+        }
+
+        void forEach(int high, IntConsumer consumer) {
+            if (words == null) {
+                for (int i = 0; i < cardinality; i++) {
+                    consumer.accept(high | array[i]);
+                }
+                return;
+            }
+            for (int w = 0; w < WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    consumer.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        Chunk and(Chunk other) {
+            if (words != null && other.words != null) {
+                long[] result = new long[WORDS];
+                int count = 0;
+                for (int w = 0; w < WORDS; w++) {
+                    result[w] = words[w] & other.words[w];
+                    count += Long.bitCount(result[w]);
+                }
+                Chunk chunk = new Chunk(result, count);
+                if (count <= ARRAY_MAX) {
+                    chunk.toArray();
+                }
+                return chunk;
+            }
+            if (words != null) {
+                return other.and(this);
+            }
+            char[] result = new char[cardinality];
+            int count = 0;
+            if (other.words != null) {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(array[i])) {
+                        result[count++] = array[i];
+                    }
+                }
+            } else {
+                int i = 0, j = 0;
+                while (i < cardinality && j < other.cardinality) {
+                    if (array[i] < other.array[j]) {
+                        i++;
+                    } else if (array[i] > other.array[j]) {
+                        j++;
+                    } else {
+                        result[count++] = array[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            return new Chunk(result, count);
+        }
+
+        int andCardinality(Chunk other) {
+            if (words != null && other.words != null) {
+                int count = 0;
+                for (int w = 0; w < WORDS; w++) {
+                    count += Long.bitCount(words[w] & other.words[w]);
+                }
+                return count;
+            }
+            if (words != null) {
+                return other.andCardinality(this);
+            }
+            int count = 0;
+            if (other.words != null) {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(array[i])) count++;
+                }
+                return count;
+            }
+            int i = 0, j = 0;
+            while (i < cardinality && j < other.cardinality) {
+                if (array[i] < other.array[j]) {
+                    i++;
+                } else if (array[i] > other.array[j]) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+
+        Chunk or(Chunk other) {
+            if (words == null && other.words == null && cardinality + other.cardinality <= ARRAY_MAX) {
+                char[] result = new char[cardinality + other.cardinality];
+                int i = 0, j = 0, count = 0;
+                while (i < cardinality || j < other.cardinality) {
+                    if (j == other.cardinality || (i < cardinality && array[i] < other.array[j])) {
+                        result[count++] = array[i++];
+                    } else if (i == cardinality || array[i] > other.array[j]) {
+                        result[count++] = other.array[j++];
+                    } else {
+                        result[count++] = array[i++];
+                        j++;
+                    }
+                }
+                return new Chunk(result, count);
+            }
+            Chunk result = copy();
+            if (result.words == null) {
+                result.toWords();
+            }
+            if (other.words != null) {
+                int count = 0;
+                for (int w = 0; w < WORDS; w++) {
+                    result.words[w] |= other.words[w];
+                    count += Long.bitCount(result.words[w]);
+                }
+                result.cardinality = count;
+            } else {
+                for (int i = 0; i < other.cardinality; i++) {
+                    result.add(other.array[i]);
+                }
+            }
+            if (result.cardinality <= ARRAY_MAX) {
+                result.toArray();
+            }
+            return result;
+        }
+
+        Chunk copy() {
+            return words != null
+                    ? new Chunk(words.clone(), cardinality)
+                    : new Chunk(Arrays.copyOf(array, Math.max(cardinality, 1)), cardinality);
+        }
+
+        long sizeInBytes() {
+            return 24 + (words != null ? WORDS * 8L : array.length * 2L);
+        }
+
+        private void toWords() {
+            long[] bits = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bits[array[i] >>> 6] |= 1L << array[i];
+            }
+            words = bits;
+            array = null;
+        }
+
+        private void toArray() {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int count = 0;
+            for (int w = 0; w < WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[count++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            array = values;
+            words = null;
+        }
+    }
+}
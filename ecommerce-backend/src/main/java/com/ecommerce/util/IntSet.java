@@ -0,0 +1,109 @@
+package com.ecommerce.util;
+
+import java.util.Arrays;
+
+/**
+ * Compact set of primitive ints backed by a sorted array.
+ * Lookups are binary searches; inserts shift the tail, which is cheap for the
+ * small-to-medium sets used in posting lists. Not thread-safe.
+ */
+public class IntSet {
+
+    private int[] elements;
+    private int size;
+
+    public IntSet() {
+        this(4);
+    }
+
+    public IntSet(int expectedSize) {
+        elements = new int[Math.max(1, expectedSize)];
+    }
+
+    /**
+     * Add a value, returning false if it was already present
+     */
+    public boolean add(int value) {
+        int pos = Arrays.binarySearch(elements, 0, size, value);
+        if (pos >= 0) {
+            return false;
+        }
+        int insertAt = -pos - 1;
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size + (size >> 1) + 1);
+        }
+        System.arraycopy(elements, insertAt, elements, insertAt + 1, size - insertAt);
+        elements[insertAt] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Merge an ascending array of values into the set in a single pass
+     */
+    public void addAll(int[] sortedValues) {
+        int[] merged = new int[size + sortedValues.length];
+        int i = 0, j = 0, n = 0;
+        while (i < size || j < sortedValues.length) {
+            int next;
+            if (j == sortedValues.length || (i < size && elements[i] <= sortedValues[j])) {
+                next = elements[i++];
+            } else {
+                next = sortedValues[j++];
+            }
+            if (n == 0 || merged[n - 1] != next) {
+                merged[n++] = next;
+            }
+        }
+        elements = merged;
+        size = n;
+    }
+
+    public boolean remove(int value) {
+        int pos = Arrays.binarySearch(elements, 0, size, value);
+        if (pos < 0) {
+            return false;
+        }
+        System.arraycopy(elements, pos + 1, elements, pos, size - pos - 1);
+        size--;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(elements, 0, size, value) >= 0;
+    }
+
+    /**
+     * Value at a position in ascending order
+     */
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Copy of the values in ascending order
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * Release unused capacity
+     */
+    public void trim() {
+        if (elements.length > size) {
+            elements = Arrays.copyOf(elements, Math.max(1, size));
+        }
+    }
+}
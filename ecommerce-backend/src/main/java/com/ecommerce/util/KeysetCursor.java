@@ -0,0 +1,44 @@
+package com.ecommerce.util;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Opaque position in a keyset-paged listing: the ordering it belongs to and the
+ * (sort key, id) of the last row served. Encoded as 17 bytes of URL-safe base64,
+ * so clients pass it back verbatim and never build one themselves.
+ */
+public record KeysetCursor(int ordering, long key, long id) {
+
+    private static final int LENGTH = 1 + Long.BYTES + Long.BYTES;
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH)
+                .put((byte) ordering)
+                .putLong(key)
+                .putLong(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to
+     *                                  another ordering
+     */
+    public static KeysetCursor decode(String cursor, int expectedOrdering) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (bytes.length != LENGTH) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int ordering = buffer.get();
+        if (ordering != expectedOrdering) {
+            throw new IllegalArgumentException("Cursor belongs to a different ordering");
+        }
+        return new KeysetCursor(ordering, buffer.getLong(), buffer.getLong());
+    }
+}
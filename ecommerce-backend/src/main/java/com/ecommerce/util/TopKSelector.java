@@ -0,0 +1,147 @@
+package com.ecommerce.util;
+
+import java.util.Arrays;
+
+/**
+ * Bounded top-K selection over (long id, double score) pairs.
+ *
+ * Keeps a min-heap of the K best entries in parallel primitive arrays, so
+ * offering N entries costs O(N log K) with no boxing. Higher scores rank first;
+ * ties are broken by the lower id for a deterministic order. Not thread-safe.
+ */
+public class TopKSelector {
+
+    private final long[] ids;
+    private final double[] scores;
+    private int size;
+    private boolean sorted;
+
+    public TopKSelector(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        ids = new long[k];
+        scores = new double[k];
+    }
+
+    /**
+     * Offer an entry, keeping it only if it ranks among the best K seen so far
+     */
+    public void offer(long id, double score) {
+        if (sorted) {
+            throw new IllegalStateException("Selector already sorted");
+        }
+        if (size < ids.length) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (size > 0 && ranksBefore(id, score, ids[0], scores[0])) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Offer every entry of a score map
+     */
+    public void offerAll(LongDoubleHashMap entries) {
+        entries.forEach(this::offer);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sort the retained entries best-first in place; no further offers are accepted
+     */
+    public TopKSelector sort() {
+        if (!sorted) {
+            // Heap sort: repeatedly move the worst remaining entry to the end
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            sorted = true;
+        }
+        return this;
+    }
+
+    /**
+     * Id at a rank, after {@link #sort()}
+     */
+    public long idAt(int rank) {
+        checkSorted();
+        return ids[rank];
+    }
+
+    /**
+     * Score at a rank, after {@link #sort()}
+     */
+    public double scoreAt(int rank) {
+        checkSorted();
+        return scores[rank];
+    }
+
+    /**
+     * Retained ids best-first, after {@link #sort()}
+     */
+    public long[] ids() {
+        checkSorted();
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Retained scores best-first, after {@link #sort()}
+     */
+    public double[] scores() {
+        checkSorted();
+        return Arrays.copyOf(scores, size);
+    }
+
+    private void checkSorted() {
+        if (!sorted) {
+            throw new IllegalStateException("Call sort() first");
+        }
+    }
+
+    private static boolean ranksBefore(long idA, double scoreA, long idB, double scoreB) {
+        return scoreA > scoreB || (scoreA == scoreB && idA < idB);
+    }
+
+    // Min-heap on rank: the root is the worst retained entry
+    private boolean worse(int a, int b) {
+        return ranksBefore(ids[b], scores[b], ids[a], scores[a]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(i, parent)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int limit) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= limit) break;
+            int right = left + 1;
+            int worst = right < limit && worse(right, left) ? right : left;
+            if (!worse(worst, i)) break;
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
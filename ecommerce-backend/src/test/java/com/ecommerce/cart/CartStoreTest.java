@@ -0,0 +1,166 @@
+package com.ecommerce.cart;
+
+import com.ecommerce.util.SnowflakeIdGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CartStoreTest {
+
+    private static final long MISSING_PRODUCT = 999L;
+
+    @TempDir
+    Path walDir;
+
+    private FakeJdbcTemplate jdbc;
+    private CartStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbc = new FakeJdbcTemplate();
+        store = newStore();
+    }
+
+    @Test
+    void oneBadCartDoesNotHoldBackTheOthers() throws Exception {
+        store.add(1L, 10L, 1);
+        store.add(2L, MISSING_PRODUCT, 1);
+
+        store.flush();
+
+        assertEquals(Set.of(1L), jdbc.writtenUsers);
+        CartStore.Stats stats = store.getStats();
+        assertEquals(1, stats.dirtyCarts());
+        assertEquals(1, stats.flushedCarts());
+        // The failed cart's segment stays for replay, next to the active one
+        assertEquals(2, stats.logSegments());
+    }
+
+    @Test
+    void cartThatKeepsFailingIsQuarantinedAndReleasesItsSegments() throws Exception {
+        store.add(2L, MISSING_PRODUCT, 1);
+        for (int i = 0; i < 3; i++) {
+            store.add(1L, 10L, 1);
+            store.flush();
+        }
+
+        CartStore.Stats stats = store.getStats();
+        assertEquals(1, stats.quarantinedCarts());
+        assertEquals(0, stats.dirtyCarts());
+        assertEquals(1, stats.logSegments());
+    }
+
+    @Test
+    void failuresWithNothingWrittenDoNotQuarantine() throws Exception {
+        jdbc.down = true;
+        store.add(1L, 10L, 1);
+        for (int i = 0; i < 5; i++) {
+            store.flush();
+        }
+        assertEquals(0, store.getStats().quarantinedCarts());
+        assertEquals(1, store.getStats().dirtyCarts());
+
+        jdbc.down = false;
+        store.flush();
+        assertEquals(Set.of(1L), jdbc.writtenUsers);
+        assertEquals(1, store.getStats().logSegments());
+    }
+
+    @Test
+    void recoveredCartsAreReportedOnce() throws Exception {
+        store.add(1L, 10L, 2);
+        store.add(3L, 11L, 1);
+
+        // A new store over the same log, as after a crash before the flush
+        CartStore restarted = newStore();
+        restarted.recover();
+
+        assertEquals(Set.of(1L, 3L), new HashSet<>(restarted.takeRecoveredUsers()));
+        assertEquals(List.of(), restarted.takeRecoveredUsers());
+        assertEquals(2, restarted.get(1L).lines().get(0).quantity());
+    }
+
+    private CartStore newStore() throws Exception {
+        return new CartStore(jdbc, new FakeTransactionTemplate(jdbc), new SnowflakeIdGenerator(1),
+                4, Duration.ofMinutes(30), 3, walDir.toString(), false);
+    }
+
+    /**
+     * Every user exists with an empty cart; item inserts for a missing product
+     * fail like a foreign key violation, and every write fails while down
+     */
+    private static final class FakeJdbcTemplate extends JdbcTemplate {
+
+        // Users whose new cart row was committed, and those of the open transaction
+        final Set<Long> writtenUsers = new HashSet<>();
+        final Set<Long> pendingUsers = new HashSet<>();
+        boolean down;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(new Object[]{0L, null, 0L, 0});
+            return (List<T>) rows;
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            if (down) {
+                throw new DataIntegrityViolationException("Connection refused");
+            }
+            if (sql.startsWith("INSERT INTO cart_items")) {
+                for (Object[] args : batchArgs) {
+                    if ((Long) args[2] == MISSING_PRODUCT) {
+                        throw new DataIntegrityViolationException("Unknown product " + args[2]);
+                    }
+                }
+            }
+            if (sql.startsWith("INSERT INTO shopping_carts")) {
+                for (Object[] args : batchArgs) {
+                    pendingUsers.add((Long) args[1]);
+                }
+            }
+            return new int[batchArgs.size()];
+        }
+    }
+
+    /**
+     * Runs the callback without a transaction manager, keeping the fake's
+     * writes only if it completes
+     */
+    private static final class FakeTransactionTemplate extends TransactionTemplate {
+
+        private final FakeJdbcTemplate jdbc;
+
+        FakeTransactionTemplate(FakeJdbcTemplate jdbc) {
+            this.jdbc = jdbc;
+        }
+
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            try {
+                T result = action.doInTransaction(new SimpleTransactionStatus());
+                jdbc.writtenUsers.addAll(jdbc.pendingUsers);
+                return result;
+            } finally {
+                jdbc.pendingUsers.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.ecommerce.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockReservationLedgerTest {
+
+    private static final long OWNER = 7L;
+    private static final long PRODUCT = 42L;
+
+    // Reservations never reach the repositories; only the sync passes do
+    private final StockReservationLedger ledger = new StockReservationLedger(null, null, 4, Duration.ofMinutes(30));
+
+    @Test
+    void nonPositiveQuantitiesAreRejected() {
+        assertTrue(ledger.reserve(OWNER, PRODUCT, 3, 10));
+
+        assertThrows(IllegalArgumentException.class, () -> ledger.reserve(OWNER, PRODUCT, -50, 10));
+        assertThrows(IllegalArgumentException.class, () -> ledger.reserve(OWNER, PRODUCT, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> ledger.adjust(OWNER, PRODUCT, -10, 10));
+        assertThrows(IllegalArgumentException.class, () -> ledger.adjust(OWNER, PRODUCT, 0, 10));
+
+        assertEquals(3, ledger.getStats().reservedUnits());
+        assertEquals(7, ledger.available(PRODUCT));
+    }
+
+    @Test
+    void holdsNeverExceedStock() {
+        assertTrue(ledger.reserve(OWNER, PRODUCT, 6, 10));
+        assertFalse(ledger.reserve(OWNER + 1, PRODUCT, 5, 10));
+        assertTrue(ledger.adjust(OWNER, PRODUCT, 2, 10));
+        assertTrue(ledger.reserve(OWNER + 1, PRODUCT, 8, 10));
+        assertEquals(0, ledger.available(PRODUCT));
+
+        ledger.release(OWNER, PRODUCT);
+        assertEquals(2, ledger.available(PRODUCT));
+        assertEquals(8, ledger.getStats().reservedUnits());
+    }
+}
@@ -0,0 +1,103 @@
+package com.ecommerce.recommendation;
+
+import com.ecommerce.model.UserInteraction;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItemBasedRecommenderTest {
+
+    // Two clusters of users and products that never share a user
+    private static final int PRODUCTS_PER_CLUSTER = 60;
+    private static final int USERS_PER_CLUSTER = 200;
+    private static final long INACTIVE_LATER = 30;
+
+    private final UserInteraction.InteractionType[] types = UserInteraction.InteractionType.values();
+
+    @Test
+    void incrementalRebuildMatchesFullRebuild() {
+        Random random = new Random(11);
+        List<long[]> interactions = new ArrayList<>();
+        for (int cluster = 0; cluster < 2; cluster++) {
+            for (int u = 0; u < USERS_PER_CLUSTER; u++) {
+                long user = cluster * USERS_PER_CLUSTER + u + 1;
+                for (int i = 0; i < 6; i++) {
+                    interactions.add(new long[]{user, productIn(cluster, random), random.nextInt(types.length)});
+                }
+            }
+        }
+        int firstPass = interactions.size();
+        // New interactions only reach the first cluster
+        for (int i = 0; i < 150; i++) {
+            long user = random.nextInt(USERS_PER_CLUSTER) + 1;
+            interactions.add(new long[]{user, 1 + random.nextInt(10), random.nextInt(types.length)});
+        }
+
+        ItemBasedRecommender recommender = new ItemBasedRecommender(null, null);
+        ReflectionTestUtils.setField(recommender, "neighbours", 8);
+
+        UserItemMatrix before = matrix(interactions.subList(0, firstPass), false);
+        ItemSimilarityModel previous = recommender.build(before, null, ItemBasedRecommender.allProducts(before), firstPass);
+
+        UserItemMatrix after = matrix(interactions, true);
+        List<Long> touched = new ArrayList<>();
+        for (long[] interaction : interactions.subList(firstPass, interactions.size())) {
+            touched.add(interaction[1]);
+        }
+        int[] targets = ItemBasedRecommender.affectedBy(after, previous, touched);
+        ItemSimilarityModel incremental = recommender.build(after, previous, targets, interactions.size());
+        ItemSimilarityModel full = recommender.build(after, null, ItemBasedRecommender.allProducts(after),
+                interactions.size());
+
+        // The untouched cluster is carried over rather than recomputed
+        assertTrue(Arrays.stream(targets).allMatch(p -> after.productId(p) <= PRODUCTS_PER_CLUSTER));
+        assertEquals(full.productCount(), incremental.productCount());
+        for (int row = 0; row < full.productCount(); row++) {
+            long productId = full.productAt(row);
+            int other = incremental.rowOf(productId);
+            assertTrue(other >= 0, "Missing row for product " + productId);
+            assertArrayEquals(neighbours(full, row), neighbours(incremental, other));
+            assertArrayEquals(similarities(full, row), similarities(incremental, other));
+        }
+    }
+
+    private static long productIn(int cluster, Random random) {
+        return cluster * PRODUCTS_PER_CLUSTER + random.nextInt(PRODUCTS_PER_CLUSTER) + 1;
+    }
+
+    private UserItemMatrix matrix(List<long[]> interactions, boolean deactivated) {
+        UserItemMatrix.Builder builder = new UserItemMatrix.Builder(RecommendationEngine::getInteractionWeight);
+        for (long product = 1; product <= 2 * PRODUCTS_PER_CLUSTER; product++) {
+            builder.addProduct(product, null, !(deactivated && product == INACTIVE_LATER));
+        }
+        long interactionId = 0;
+        for (long[] interaction : interactions) {
+            builder.addInteraction(++interactionId, interaction[0], interaction[1], types[(int) interaction[2]]);
+        }
+        return builder.build();
+    }
+
+    private static long[] neighbours(ItemSimilarityModel model, int row) {
+        long[] ids = new long[model.rowEnd(row) - model.rowStart(row)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = model.neighbourAt(model.rowStart(row) + i);
+        }
+        return ids;
+    }
+
+    private static double[] similarities(ItemSimilarityModel model, int row) {
+        double[] sims = new double[model.rowEnd(row) - model.rowStart(row)];
+        for (int i = 0; i < sims.length; i++) {
+            sims[i] = model.similarityAt(model.rowStart(row) + i);
+        }
+        return sims;
+    }
+}
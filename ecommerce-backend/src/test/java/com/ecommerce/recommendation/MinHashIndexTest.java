@@ -0,0 +1,27 @@
+package com.ecommerce.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinHashIndexTest {
+
+    @Test
+    void usersWithTheSameProductsAreCandidatesEvenBeyondIntIds() {
+        long big = Integer.MAX_VALUE + 10L;
+        MinHashIndex index = new MinHashIndex(16, 2);
+        for (long productId = 1; productId <= 5; productId++) {
+            index.add(big, productId);
+            index.add(Long.MAX_VALUE, productId);
+        }
+        index.add(3L, 999L);
+
+        long[] candidates = index.candidates(big);
+        assertTrue(Arrays.stream(candidates).anyMatch(id -> id == Long.MAX_VALUE));
+        assertTrue(Arrays.stream(candidates).noneMatch(id -> id == 3L));
+        assertEquals(0, index.candidates(42L).length);
+    }
+}
@@ -0,0 +1,38 @@
+package com.ecommerce.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProductUserIndexTest {
+
+    @Test
+    void keepsUserIdsBeyondIntRange() {
+        long big = Integer.MAX_VALUE + 10L;
+        UserItemMatrix.Builder builder = new UserItemMatrix.Builder(RecommendationEngine::getInteractionWeight);
+        builder.addProduct(7L, null, true);
+        builder.addInteraction(1L, big, 7L, null);
+        builder.addInteraction(2L, 3L, 7L, null);
+        ProductUserIndex index = new ProductUserIndex();
+        index.addAll(builder.build());
+        index.add(7L, Long.MAX_VALUE);
+        index.add(8L, big);
+
+        long[] users = index.usersOf(7L);
+        Arrays.sort(users);
+        assertArrayEquals(new long[]{3L, big, Long.MAX_VALUE}, users);
+        assertArrayEquals(new long[]{big}, index.usersOf(8L));
+        assertEquals(0, index.usersOf(9L).length);
+    }
+
+    @Test
+    void addingAUserTwiceKeepsOneEntry() {
+        ProductUserIndex index = new ProductUserIndex();
+        index.add(1L, 5L);
+        index.add(1L, 5L);
+        assertArrayEquals(new long[]{5L}, index.usersOf(1L));
+    }
+}
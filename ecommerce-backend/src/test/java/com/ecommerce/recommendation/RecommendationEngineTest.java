@@ -0,0 +1,81 @@
+package com.ecommerce.recommendation;
+
+import com.ecommerce.model.UserInteraction;
+import com.ecommerce.util.LongDoubleHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecommendationEngineTest {
+
+    private static final int USERS = 3_000;
+    private static final int PRODUCTS = 400;
+    private static final int CATEGORIES = 12;
+
+    private final UserInteraction.InteractionType[] types = UserInteraction.InteractionType.values();
+
+    private RecommendationEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(7);
+        UserItemMatrix.Builder builder = new UserItemMatrix.Builder(RecommendationEngine::getInteractionWeight);
+        for (long product = 1; product <= PRODUCTS; product++) {
+            builder.addProduct(product, product % CATEGORIES + 1, true);
+        }
+        long interactionId = 0;
+        for (long user = 1; user <= USERS; user++) {
+            // Product 1 is shared by everyone, so each user has all others as candidates
+            builder.addInteraction(++interactionId, user, 1, UserInteraction.InteractionType.VIEW);
+            for (int i = 0; i < 8; i++) {
+                builder.addInteraction(++interactionId, user, 2 + random.nextInt(PRODUCTS - 1),
+                        types[random.nextInt(types.length)]);
+            }
+        }
+        UserItemMatrix matrix = builder.build();
+
+        ProductUserIndex productUserIndex = new ProductUserIndex();
+        productUserIndex.addAll(matrix);
+        engine = new RecommendationEngine(null, null, productUserIndex, new MinHashIndex(16, 2));
+        ReflectionTestUtils.setField(engine, "matrix", matrix);
+        ReflectionTestUtils.setField(engine, "similarityThreshold", 0.05);
+        ReflectionTestUtils.setField(engine, "neighbourSearch", "inverted-index");
+        ReflectionTestUtils.setField(engine, "parallelism", 4);
+        ReflectionTestUtils.setField(engine, "parallelMinCandidates", 1);
+    }
+
+    @Test
+    void parallelScoringMatchesSequential() {
+        try {
+            for (long userId = 1; userId <= USERS; userId += 149) {
+                ReflectionTestUtils.setField(engine, "parallelEnabled", false);
+                LongDoubleHashMap sequential = engine.score(userId);
+                ReflectionTestUtils.setField(engine, "parallelEnabled", true);
+                LongDoubleHashMap parallel = engine.score(userId);
+
+                assertNotNull(sequential);
+                assertTrue(sequential.size() > 0);
+                assertEquals(sequential.size(), parallel.size());
+                sequential.forEach((productId, score) -> {
+                    assertTrue(parallel.containsKey(productId));
+                    // Partial sums are added in a different order
+                    assertEquals(score, parallel.get(productId, Double.NaN), 1e-9 * Math.max(1.0, score));
+                });
+            }
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void unknownUserHasNoScores() {
+        assertNull(engine.score(USERS + 1));
+    }
+}
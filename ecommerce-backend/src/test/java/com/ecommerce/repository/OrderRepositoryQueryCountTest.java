@@ -0,0 +1,118 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.model.Category;
+import com.ecommerce.model.Order;
+import com.ecommerce.model.OrderItem;
+import com.ecommerce.model.Product;
+import com.ecommerce.model.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Order reads must stay at one statement however many orders, items, products
+ * and categories they return; a second statement means an N+1 crept back in.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class OrderRepositoryQueryCountTest {
+
+    private static final int ORDERS = 5;
+    private static final int ITEMS_PER_ORDER = 4;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private Statistics statistics;
+    private Long userId;
+    private Long orderId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail("orders@example.com");
+        user.setPassword("secret");
+        user.setFirstName("Query");
+        entityManager.persist(user);
+        userId = user.getId();
+
+        Product[] products = new Product[ITEMS_PER_ORDER];
+        for (int i = 0; i < products.length; i++) {
+            Category category = new Category();
+            category.setName("Category " + i);
+            entityManager.persist(category);
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setPrice(BigDecimal.TEN);
+            product.setStockQuantity(100);
+            product.setCategory(category);
+            products[i] = entityManager.persist(product);
+        }
+        for (int o = 0; o < ORDERS; o++) {
+            Order order = new Order();
+            order.setOrderNumber("ORD-TEST-" + o);
+            order.setUser(user);
+            order.setTotalAmount(BigDecimal.valueOf(10L * ITEMS_PER_ORDER));
+            entityManager.persist(order);
+            orderId = order.getId();
+            for (Product product : products) {
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(product);
+                item.setQuantity(1);
+                item.setUnitPrice(BigDecimal.TEN);
+                item.setSubtotal(BigDecimal.TEN);
+                entityManager.persist(item);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void orderHistoryIsOneStatement() {
+        List<Order> orders = orderRepository.findByUserIdOrderByCreatedAtDesc(userId);
+
+        assertEquals(ORDERS, orders.size());
+        assertEquals(ORDERS * ITEMS_PER_ORDER, touchItems(orders));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void orderDetailIsOneStatement() {
+        Order order = orderRepository.findWithItemsById(orderId).orElseThrow();
+
+        assertEquals(ITEMS_PER_ORDER, touchItems(List.of(order)));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Read what the order endpoints serialize, so any lazy load shows up as a statement
+     */
+    private static int touchItems(List<Order> orders) {
+        int items = 0;
+        for (Order order : orders) {
+            for (OrderItem item : order.getOrderItems()) {
+                item.getProduct().getName();
+                item.getProduct().getCategory().getName();
+                items++;
+            }
+        }
+        return items;
+    }
+}
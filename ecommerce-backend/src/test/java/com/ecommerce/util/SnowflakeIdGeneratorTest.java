@@ -0,0 +1,132 @@
+package com.ecommerce.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeIdGeneratorTest {
+
+    private static final long START = SnowflakeIdGenerator.EPOCH_MILLIS + 1_000_000L;
+
+    @Test
+    void idsAreUniqueAcrossThreadsAtOverAMillionPerSecond() throws Exception {
+        int threads = 8, perThread = 500_000;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3);
+        long[][] issued = new long[threads][perThread];
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] workers = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                long[] ids = issued[t];
+                workers[t] = pool.submit(() -> {
+                    ready.countDown();
+                    go.await();
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return null;
+                });
+            }
+            ready.await();
+            long start = System.nanoTime();
+            go.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+            double perSecond = threads * (double) perThread / ((System.nanoTime() - start) / 1e9);
+            assertTrue(perSecond > 1_000_000, "Generated only " + (long) perSecond + " ids/s");
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (long[] ids : issued) {
+            // Each thread sees its own ids in increasing order
+            for (int i = 1; i < ids.length; i++) {
+                assertTrue(ids[i] > ids[i - 1]);
+            }
+        }
+        long[] all = new long[threads * perThread];
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(issued[t], 0, all, t * perThread, perThread);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertTrue(all[i] != all[i - 1], "Duplicate id " + all[i]);
+        }
+        assertEquals(3, SnowflakeIdGenerator.nodeOf(all[0]));
+    }
+
+    @Test
+    void exhaustedSequenceBorrowsTheNextMillisecond() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, () -> START);
+        long previous = 0;
+        // 4096 ids per millisecond, so this runs two milliseconds ahead of the clock
+        for (int i = 0; i < 3 * 4096; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        assertEquals(START + 2, SnowflakeIdGenerator.timestampOf(previous));
+    }
+
+    @Test
+    void clockMovingBackKeepsIdsIncreasing() {
+        AtomicLong clock = new AtomicLong(START);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+        long before = generator.nextId();
+
+        clock.set(START - 50);
+        long after = generator.nextId();
+
+        assertTrue(after > before);
+        assertEquals(START, SnowflakeIdGenerator.timestampOf(after));
+    }
+
+    @Test
+    void waitsForTheClockOnceTooFarAhead() throws Exception {
+        AtomicLong clock = new AtomicLong(START);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+        long last = 0;
+        // The current millisecond plus the five it may borrow ahead of the clock
+        for (int i = 0; i < 6 * 4096; i++) {
+            last = generator.nextId();
+        }
+        assertEquals(START + 5, SnowflakeIdGenerator.timestampOf(last));
+        clock.set(START - 50);
+
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> blocked = caller.submit(generator::nextId);
+            assertThrows(TimeoutException.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+            assertFalse(blocked.isDone());
+
+            clock.set(START + 10);
+            long id = blocked.get(5, TimeUnit.SECONDS);
+            assertTrue(id > last);
+            assertEquals(START + 10, SnowflakeIdGenerator.timestampOf(id));
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsNodeIdsOutsideTenBits() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(1024));
+        assertEquals(1023, SnowflakeIdGenerator.nodeOf(new SnowflakeIdGenerator(1023).nextId()));
+    }
+}
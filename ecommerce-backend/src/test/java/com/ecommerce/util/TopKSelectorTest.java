@@ -0,0 +1,80 @@
+package com.ecommerce.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TopKSelectorTest {
+
+    @Test
+    void keepsTheBestEntriesBestFirst() {
+        Random random = new Random(42);
+        int n = 10_000, k = 25;
+        long[][] entries = new long[n][];
+        TopKSelector selector = new TopKSelector(k);
+        for (int i = 0; i < n; i++) {
+            // Few distinct scores so many entries tie
+            double score = random.nextInt(200) / 4.0;
+            entries[i] = new long[]{i, Double.doubleToLongBits(score)};
+            selector.offer(i, score);
+        }
+        selector.sort();
+
+        Arrays.sort(entries, Comparator
+                .comparingDouble((long[] e) -> Double.longBitsToDouble(e[1])).reversed()
+                .thenComparingLong(e -> e[0]));
+        assertEquals(k, selector.size());
+        for (int rank = 0; rank < k; rank++) {
+            assertEquals(entries[rank][0], selector.idAt(rank));
+            assertEquals(Double.longBitsToDouble(entries[rank][1]), selector.scoreAt(rank));
+        }
+    }
+
+    @Test
+    void breaksTiesByLowerId() {
+        TopKSelector selector = new TopKSelector(3);
+        selector.offer(9, 1.0);
+        selector.offer(4, 1.0);
+        selector.offer(7, 2.0);
+        selector.offer(1, 1.0);
+        selector.offer(6, 1.0);
+        selector.sort();
+
+        assertArrayEquals(new long[]{7, 1, 4}, selector.ids());
+        assertArrayEquals(new double[]{2.0, 1.0, 1.0}, selector.scores());
+    }
+
+    @Test
+    void returnsEverythingWhenFewerThanKEntries() {
+        TopKSelector selector = new TopKSelector(10);
+        selector.offer(3, 0.5);
+        selector.offer(2, 1.5);
+        selector.sort();
+
+        assertArrayEquals(new long[]{2, 3}, selector.ids());
+    }
+
+    @Test
+    void zeroKeepsNothing() {
+        TopKSelector selector = new TopKSelector(0);
+        selector.offer(1, 1.0);
+
+        assertEquals(0, selector.sort().ids().length);
+    }
+
+    @Test
+    void rejectsOffersAfterSortAndReadsBeforeSort() {
+        TopKSelector selector = new TopKSelector(2);
+        selector.offer(1, 1.0);
+        assertThrows(IllegalStateException.class, selector::ids);
+
+        selector.sort();
+        assertThrows(IllegalStateException.class, () -> selector.offer(2, 2.0));
+    }
+}
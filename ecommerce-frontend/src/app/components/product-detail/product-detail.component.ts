@@ -102,7 +102,7 @@ export class ProductDetailComponent implements OnInit {
     
     const id = this.route.snapshot.paramMap.get('id');
     if (id) {
-      this.apiService.getProduct(+id).subscribe({
+      this.apiService.getProduct(+id, this.currentUser?.id).subscribe({
         next: (data: any) => {
           this.product = data;
         }
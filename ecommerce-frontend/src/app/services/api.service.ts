@@ -16,8 +16,9 @@ export class ApiService {
     return this.http.get(`${API_URL}/products?page=${page}&size=${size}`);
   }
   
-  getProduct(id: number): Observable<any> {
-    return this.http.get(`${API_URL}/products/${id}`);
+  getProduct(id: number, userId?: number): Observable<any> {
+    const viewer = userId != null ? `?userId=${userId}` : '';
+    return this.http.get(`${API_URL}/products/${id}${viewer}`);
   }
   
   getProductsByCategory(categoryId: number): Observable<any> {
@@ -42,11 +43,11 @@ export class ApiService {
     return this.http.post(`${API_URL}/cart/${userId}/add?productId=${productId}&quantity=${quantity}`, {});
   }
   
-  updateCartItem(userId: number, cartItemId: number, quantity: number): Observable<any> {
+  updateCartItem(userId: number, cartItemId: string, quantity: number): Observable<any> {
     return this.http.put(`${API_URL}/cart/${userId}/items/${cartItemId}?quantity=${quantity}`, {});
   }
   
-  removeFromCart(userId: number, cartItemId: number): Observable<any> {
+  removeFromCart(userId: number, cartItemId: string): Observable<any> {
     return this.http.delete(`${API_URL}/cart/${userId}/items/${cartItemId}`);
   }
   